@@ -0,0 +1,66 @@
+package com.scerra.utils.simplecrawler;
+
+/**
+ * A minimal char trie whose nodes carry an int value, used by the URL scope filter for prefix and suffix matching.
+ * Lookups walk the nodes char by char, so they never allocate.
+ */
+class CharTrie {
+    static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private int value;
+
+        Node child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        int getValue() {
+            return value;
+        }
+
+        private Node addChild(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                char[] newKeys = new char[keys.length + 1];
+                Node[] newChildren = new Node[children.length + 1];
+                System.arraycopy(keys, 0, newKeys, 0, keys.length);
+                System.arraycopy(children, 0, newChildren, 0, children.length);
+                newKeys[keys.length] = c;
+                newChildren[children.length] = child;
+                keys = newKeys;
+                children = newChildren;
+            }
+            return child;
+        }
+    }
+
+    private final Node root = new Node();
+
+    Node getRoot() {
+        return root;
+    }
+
+    boolean isEmpty() {
+        return root.keys.length == 0 && root.value == 0;
+    }
+
+    /**
+     * Inserts the specified key, or its reverse, OR-ing the value flags into the value of its last node.
+     * @param key
+     * @param reversed
+     * @param value
+     */
+    void insert(String key, boolean reversed, int value) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.addChild(key.charAt(reversed ? key.length() - 1 - i : i));
+        }
+        node.value |= value;
+    }
+}
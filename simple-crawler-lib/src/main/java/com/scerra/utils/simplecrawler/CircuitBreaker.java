@@ -0,0 +1,229 @@
+package com.scerra.utils.simplecrawler;
+
+/**
+ * A circuit breaker guarding the requests to a host or host path prefix.
+ * It keeps a rolling window of the latest request outcomes and opens when either the failure rate or the
+ * slow call rate in the window reaches its threshold. While open, no request is allowed; once the open duration
+ * has elapsed, a single probe request is allowed (half open state), which either closes the breaker
+ * or opens it again for twice as long. Only the outcome of the probe decides: outcomes of requests sent before
+ * the breaker opened are only added to the window. After circuitBreakerMaxFailedProbes failed probes in a row,
+ * the breaker gives up: it stays open for the rest of the crawl, and the crawler drops its pages.
+ * Not thread safe: the crawler only accesses it while holding its mutex.
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /* Upper bound of the open duration, when it keeps doubling after failed probes. */
+    private static final long MAX_OPEN_DURATION_FACTOR = 16;
+
+    private final String key;
+    private final CrawlerConfig config;
+    /* Rolling window of the latest outcomes, stored as ring buffers. */
+    private final boolean[] failedCalls;
+    private final boolean[] slowCalls;
+    private final long[] latencies;
+    private int windowStart;
+    private int samples;
+    private int failedCount;
+    private int slowCount;
+    private long latencySum;
+
+    private State state = State.CLOSED;
+    private long openDurationMillis;
+    private long openUntilNanos;
+    /* URL of the probe request in flight while half open, or null. */
+    private String probeUrl;
+    /* Number of failed probes in a row. */
+    private int failedProbes;
+    private boolean givenUp;
+    private int tripCount;
+    private int deferredCount;
+    private int droppedCount;
+
+    CircuitBreaker(String key, CrawlerConfig config) {
+        this.key = key;
+        this.config = config;
+        this.failedCalls = new boolean[config.getCircuitBreakerWindowSize()];
+        this.slowCalls = new boolean[config.getCircuitBreakerWindowSize()];
+        this.latencies = new long[config.getCircuitBreakerWindowSize()];
+        this.openDurationMillis = config.getCircuitBreakerOpenDuration();
+    }
+
+    /**
+     * Returns true if a request for the specified URL may be sent now. When the open duration has elapsed,
+     * this moves the breaker to the half open state and lets a single probe request through.
+     * @param url
+     * @param nowNanos
+     * @return
+     */
+    boolean allowRequest(String url, long nowNanos) {
+        if (givenUp) {
+            return false;
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nowNanos - openUntilNanos >= 0) {
+                    state = State.HALF_OPEN;
+                    probeUrl = url;
+                    System.out.println(String.format("Circuit breaker %s half open, sending probe request.", key));
+                    return true;
+                }
+                return false;
+            default:
+                if (probeUrl == null) {
+                    probeUrl = url;
+                    return true;
+                }
+                return false;
+        }
+    }
+
+    /**
+     * Records the outcome of the request for the specified URL, updating the breaker state.
+     * @param url
+     * @param latencyMillis
+     * @param failed
+     * @param nowNanos
+     */
+    void recordOutcome(String url, long latencyMillis, boolean failed, long nowNanos) {
+        boolean slow = latencyMillis >= config.getCircuitBreakerSlowCallDuration();
+
+        if (state == State.HALF_OPEN && url.equals(probeUrl)) {
+            probeUrl = null;
+            if (failed || slow) {
+                failedProbes += 1;
+                openDurationMillis = Math.min(openDurationMillis * 2, config.getCircuitBreakerOpenDuration() * MAX_OPEN_DURATION_FACTOR);
+                open(nowNanos);
+                if (failedProbes >= config.getCircuitBreakerMaxFailedProbes()) {
+                    givenUp = true;
+                    System.out.println(String.format("Circuit breaker %s gave up after %d failed probes, dropping its pages.", key, failedProbes));
+                }
+            } else {
+                System.out.println(String.format("Circuit breaker %s closed.", key));
+                state = State.CLOSED;
+                failedProbes = 0;
+                openDurationMillis = config.getCircuitBreakerOpenDuration();
+                clearWindow();
+                addSample(latencyMillis, false, false);
+            }
+            return;
+        }
+
+        // Outcomes of requests sent before the breaker opened only update the window.
+        addSample(latencyMillis, failed, slow);
+        if (state == State.CLOSED && samples >= config.getCircuitBreakerMinSamples() &&
+                (getFailureRate() >= config.getCircuitBreakerFailureRateThreshold() ||
+                        getSlowCallRate() >= config.getCircuitBreakerSlowCallRateThreshold())) {
+            tripCount += 1;
+            open(nowNanos);
+        }
+    }
+
+    void recordDeferral() {
+        deferredCount += 1;
+    }
+
+    void recordDrop() {
+        droppedCount += 1;
+    }
+
+    /**
+     * Returns the number of milliseconds until a probe request may be sent, 0 if requests are allowed now,
+     * or -1 if the breaker is waiting for the outcome of a probe request or has given up.
+     * @param nowNanos
+     * @return
+     */
+    long millisUntilNextRequest(long nowNanos) {
+        if (givenUp) {
+            return -1;
+        }
+        switch (state) {
+            case CLOSED:
+                return 0;
+            case OPEN:
+                return Math.max(0, (openUntilNanos - nowNanos) / 1_000_000);
+            default:
+                return probeUrl != null ? -1 : 0;
+        }
+    }
+
+    private void open(long nowNanos) {
+        state = State.OPEN;
+        openUntilNanos = nowNanos + openDurationMillis * 1_000_000;
+        System.out.println(String.format("Circuit breaker %s opened for %dms {failureRate: %.2f, slowCallRate: %.2f, averageLatency: %dms}",
+                key, openDurationMillis, getFailureRate(), getSlowCallRate(), getAverageLatency()));
+    }
+
+    private void addSample(long latencyMillis, boolean failed, boolean slow) {
+        int index;
+        if (samples == failedCalls.length) {
+            /* Window is full, evict the oldest sample. */
+            index = windowStart;
+            windowStart = (windowStart + 1) % failedCalls.length;
+            failedCount -= failedCalls[index] ? 1 : 0;
+            slowCount -= slowCalls[index] ? 1 : 0;
+            latencySum -= latencies[index];
+        } else {
+            index = (windowStart + samples) % failedCalls.length;
+            samples += 1;
+        }
+        failedCalls[index] = failed;
+        slowCalls[index] = slow;
+        latencies[index] = latencyMillis;
+        failedCount += failed ? 1 : 0;
+        slowCount += slow ? 1 : 0;
+        latencySum += latencyMillis;
+    }
+
+    private void clearWindow() {
+        windowStart = 0;
+        samples = 0;
+        failedCount = 0;
+        slowCount = 0;
+        latencySum = 0;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public double getFailureRate() {
+        return samples == 0 ? 0 : (double) failedCount / samples;
+    }
+
+    public double getSlowCallRate() {
+        return samples == 0 ? 0 : (double) slowCount / samples;
+    }
+
+    public long getAverageLatency() {
+        return samples == 0 ? 0 : latencySum / samples;
+    }
+
+    public int getTripCount() {
+        return tripCount;
+    }
+
+    public int getDeferredCount() {
+        return deferredCount;
+    }
+
+    /**
+     * Returns true if the breaker gave up after too many failed probes, its pages being dropped.
+     * @return
+     */
+    public boolean isGivenUp() {
+        return givenUp;
+    }
+
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+}
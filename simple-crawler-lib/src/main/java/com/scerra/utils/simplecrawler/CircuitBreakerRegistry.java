@@ -0,0 +1,134 @@
+package com.scerra.utils.simplecrawler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Holds the circuit breakers of a crawl, one per host path prefix, and the retry queues of the pages
+ * deferred by them. Pages are grouped by their host followed by the first circuitBreakerPathDepth path segments.
+ * Not thread safe: the crawler only accesses it while holding its mutex.
+ */
+class CircuitBreakerRegistry {
+    private final CrawlerConfig config;
+    private final Map<String, CircuitBreaker> breakers = new HashMap<>();
+
+    CircuitBreakerRegistry(CrawlerConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Returns the breaker key of a URL, e.g. "example.com/search" for "https://example.com/search/results?q=1"
+     * with a path depth of 1. Scans the URL chars without parsing it.
+     * @param url
+     * @return
+     */
+    String keyOf(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int depth = config.getCircuitBreakerPathDepth();
+        int end = start;
+        int segments = -1;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '?' || c == '#') {
+                break;
+            }
+            if (c == '/') {
+                segments += 1;
+                if (segments == depth) {
+                    break;
+                }
+            }
+            end++;
+        }
+        return url.substring(start, end);
+    }
+
+    /**
+     * Returns true if a request for the specified URL may be sent now.
+     * @param key
+     * @param url
+     * @return
+     */
+    boolean allowRequest(String key, String url) {
+        CircuitBreaker breaker = breakers.get(key);
+        return breaker == null || breaker.allowRequest(url, System.nanoTime());
+    }
+
+    void recordDeferral(String key) {
+        CircuitBreaker breaker = breakers.get(key);
+        if (breaker != null) {
+            breaker.recordDeferral();
+        }
+    }
+
+    void recordDrop(String key) {
+        CircuitBreaker breaker = breakers.get(key);
+        if (breaker != null) {
+            breaker.recordDrop();
+        }
+    }
+
+    /**
+     * Returns the state of the breaker of the specified key, CLOSED if it has none.
+     * @param key
+     * @return
+     */
+    CircuitBreaker.State getState(String key) {
+        CircuitBreaker breaker = breakers.get(key);
+        return breaker == null ? CircuitBreaker.State.CLOSED : breaker.getState();
+    }
+
+    /**
+     * Returns true if the breaker of the specified key gave up, so that its pages are to be dropped.
+     * @param key
+     * @return
+     */
+    boolean isGivenUp(String key) {
+        CircuitBreaker breaker = breakers.get(key);
+        return breaker != null && breaker.isGivenUp();
+    }
+
+    void recordOutcome(String key, String url, long latencyMillis, boolean failed) {
+        breakers.computeIfAbsent(key, k -> new CircuitBreaker(k, config))
+                .recordOutcome(url, latencyMillis, failed, System.nanoTime());
+    }
+
+    /**
+     * Returns the number of milliseconds until one of the specified breakers allows a request,
+     * or -1 if none of them will before a pending probe request completes.
+     * @param keys
+     * @return
+     */
+    long millisUntilNextRequest(Iterable<String> keys) {
+        long now = System.nanoTime();
+        long delay = -1;
+        for (String key : keys) {
+            CircuitBreaker breaker = breakers.get(key);
+            long breakerDelay = breaker == null ? 0 : breaker.millisUntilNextRequest(now);
+            if (breakerDelay >= 0 && (delay < 0 || breakerDelay < delay)) {
+                delay = breakerDelay;
+            }
+        }
+        return delay;
+    }
+
+    List<CircuitBreakerStats> getStats(Map<String, Queue<Page>> deferredPages) {
+        List<CircuitBreakerStats> stats = new ArrayList<>();
+        for (CircuitBreaker breaker : breakers.values()) {
+            Queue<Page> deferred = deferredPages.get(breaker.getKey());
+            stats.add(new CircuitBreakerStats(breaker.getKey(), breaker.getState(), breaker.getFailureRate(),
+                    breaker.getSlowCallRate(), breaker.getAverageLatency(), breaker.getTripCount(),
+                    breaker.getDeferredCount(), deferred != null ? deferred.size() : 0, breaker.isGivenUp(),
+                    breaker.getDroppedCount()));
+        }
+        return stats;
+    }
+
+    void clear() {
+        breakers.clear();
+    }
+}
@@ -0,0 +1,106 @@
+package com.scerra.utils.simplecrawler;
+
+/**
+ * A point in time snapshot of a circuit breaker, exposed for monitoring.
+ */
+public class CircuitBreakerStats {
+    private final String key;
+    private final CircuitBreaker.State state;
+    private final double failureRate;
+    private final double slowCallRate;
+    private final long averageLatency;
+    private final int tripCount;
+    private final int deferredCount;
+    private final int deferredPages;
+    private final boolean givenUp;
+    private final int droppedCount;
+
+    public CircuitBreakerStats(String key, CircuitBreaker.State state, double failureRate, double slowCallRate,
+                               long averageLatency, int tripCount, int deferredCount, int deferredPages,
+                               boolean givenUp, int droppedCount) {
+        this.key = key;
+        this.state = state;
+        this.failureRate = failureRate;
+        this.slowCallRate = slowCallRate;
+        this.averageLatency = averageLatency;
+        this.tripCount = tripCount;
+        this.deferredCount = deferredCount;
+        this.deferredPages = deferredPages;
+        this.givenUp = givenUp;
+        this.droppedCount = droppedCount;
+    }
+
+    /**
+     * Returns the host or host path prefix guarded by the breaker.
+     * @return
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public CircuitBreaker.State getState() {
+        return state;
+    }
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    public double getSlowCallRate() {
+        return slowCallRate;
+    }
+
+    /**
+     * Returns the average latency in ms of the requests in the rolling window.
+     * @return
+     */
+    public long getAverageLatency() {
+        return averageLatency;
+    }
+
+    /**
+     * Returns the number of times the breaker opened.
+     * @return
+     */
+    public int getTripCount() {
+        return tripCount;
+    }
+
+    /**
+     * Returns the number of pages moved to the retry queue of the breaker while it did not allow requests.
+     * @return
+     */
+    public int getDeferredCount() {
+        return deferredCount;
+    }
+
+    /**
+     * Returns the number of pages currently waiting in the retry queue of the breaker.
+     * @return
+     */
+    public int getDeferredPages() {
+        return deferredPages;
+    }
+
+    /**
+     * Returns true if the breaker gave up after too many failed probes in a row.
+     * @return
+     */
+    public boolean isGivenUp() {
+        return givenUp;
+    }
+
+    /**
+     * Returns the number of pages dropped, without being crawled, because the breaker gave up.
+     * @return
+     */
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{key: %s, state: %s, failureRate: %.2f, slowCallRate: %.2f, averageLatency: %dms, tripCount: %d, deferredCount: %d, deferredPages: %d, givenUp: %s, droppedCount: %d}",
+                key, state, failureRate, slowCallRate, averageLatency, tripCount, deferredCount, deferredPages, givenUp, droppedCount);
+    }
+}
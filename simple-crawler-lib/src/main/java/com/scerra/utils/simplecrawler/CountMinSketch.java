@@ -0,0 +1,55 @@
+package com.scerra.utils.simplecrawler;
+
+import java.util.Arrays;
+
+/**
+ * A count-min sketch, estimating the counts of 64 bit keys in fixed memory. Estimates are never lower than the
+ * actual counts, and only higher when keys collide in every row.
+ * Not thread safe: the crawler only accesses it while holding its mutex.
+ */
+class CountMinSketch {
+    private final int[][] counts;
+    private final int mask;
+
+    /**
+     * @param depth number of rows, each using a different hash of the key
+     * @param width number of counters per row, must be a power of two
+     */
+    CountMinSketch(int depth, int width) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException(String.format("Sketch width must be a power of two: %d", width));
+        }
+        this.counts = new int[depth][width];
+        this.mask = width - 1;
+    }
+
+    void add(long key, int count) {
+        for (int row = 0; row < counts.length; row++) {
+            int index = index(key, row);
+            counts[row][index] = (int) Math.min(Integer.MAX_VALUE, (long) counts[row][index] + count);
+        }
+    }
+
+    int estimate(long key) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < counts.length; row++) {
+            estimate = Math.min(estimate, counts[row][index(key, row)]);
+        }
+        return estimate;
+    }
+
+    void clear() {
+        for (int[] row : counts) {
+            Arrays.fill(row, 0);
+        }
+    }
+
+    private int index(long key, int row) {
+        /* Murmur3 finalizer, seeded by the row. */
+        long h = key + (row + 1) * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        h = h ^ (h >>> 33);
+        return (int) h & mask;
+    }
+}
@@ -0,0 +1,119 @@
+package com.scerra.utils.simplecrawler;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events emitted by the crawl pipeline, one per stage.
+ * They are recorded by a {@link CrawlProfiler} when profiling is enabled in the config, or by any other recording
+ * enabling them, e.g. one started with -XX:StartFlightRecording. When no recording enables them, creating and
+ * timing an event is close to free, as the JIT compiler removes the disabled event code.
+ */
+final class CrawlEvents {
+    static final String FETCH = "com.scerra.simplecrawler.Fetch";
+    static final String PARSE = "com.scerra.simplecrawler.Parse";
+    static final String LINK_EXTRACTION = "com.scerra.simplecrawler.LinkExtraction";
+    static final String LOCK = "com.scerra.simplecrawler.Lock";
+    static final String ENQUEUE = "com.scerra.simplecrawler.Enqueue";
+    static final String DEQUEUE = "com.scerra.simplecrawler.Dequeue";
+
+    /* Event types, in pipeline order. */
+    static final List<Class<? extends CrawlEvent>> TYPES = Arrays.asList(
+            Fetch.class, Parse.class, LinkExtraction.class, Lock.class, Enqueue.class, Dequeue.class);
+
+    private CrawlEvents() {
+    }
+
+    @Category("Simple Crawler")
+    @StackTrace(false)
+    abstract static class CrawlEvent extends Event {
+        @Label("URL")
+        String url;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Links")
+        int links;
+
+        /**
+         * Commits the event with the specified fields, if it is enabled and its duration reached the threshold.
+         * @param url
+         * @param bytes
+         * @param links
+         */
+        void commit(String url, long bytes, int links) {
+            if (shouldCommit()) {
+                this.url = url;
+                this.bytes = bytes;
+                this.links = links;
+                commit();
+            }
+        }
+    }
+
+    @Name(FETCH)
+    @Label("Fetch")
+    @Description("HTTP request of a page, from sending it to receiving the whole response body")
+    static class Fetch extends CrawlEvent {
+        @Label("Status Code")
+        int statusCode;
+
+        @Label("Connect")
+        @Description("Time to get a connection, including DNS resolution and TLS handshake, zero for a pooled connection")
+        @Timespan
+        long connectDuration;
+
+        @Label("Time To First Byte")
+        @Timespan
+        long timeToFirstByte;
+
+        @Label("Body")
+        @Timespan
+        long bodyDuration;
+    }
+
+    @Name(PARSE)
+    @Label("Parse")
+    @Description("HTML parsing of a response body")
+    static class Parse extends CrawlEvent {
+    }
+
+    @Name(LINK_EXTRACTION)
+    @Label("Link Extraction")
+    @Description("Selection and scope filtering of the links of a parsed page")
+    static class LinkExtraction extends CrawlEvent {
+    }
+
+    @Name(LOCK)
+    @Label("Lock")
+    @Description("Wait to acquire the crawler mutex")
+    static class Lock extends CrawlEvent {
+    }
+
+    @Name(ENQUEUE)
+    @Label("Enqueue")
+    @Description("Processing of the links of a crawled page, enqueuing the new ones")
+    static class Enqueue extends CrawlEvent {
+        @Label("Queue Size")
+        int queueSize;
+    }
+
+    @Name(DEQUEUE)
+    @Label("Dequeue")
+    @Description("Selection of the next page to crawl, including pages deferred by circuit breakers")
+    static class Dequeue extends CrawlEvent {
+        @Label("Queue Size")
+        int queueSize;
+    }
+}
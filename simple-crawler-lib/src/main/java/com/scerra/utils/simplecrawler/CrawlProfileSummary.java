@@ -0,0 +1,130 @@
+package com.scerra.utils.simplecrawler;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A per stage time breakdown of a crawl, summarised from the crawl events of a Java Flight Recorder file.
+ * Stage times are summed over all threads, so with concurrent requests the fetch time exceeds the crawl time.
+ */
+public class CrawlProfileSummary {
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+
+    private CrawlProfileSummary() {
+        stages.put(CrawlEvents.FETCH, new Stage("Fetch"));
+        stages.put(CrawlEvents.FETCH + ".connect", new Stage("  connect"));
+        stages.put(CrawlEvents.FETCH + ".ttfb", new Stage("  time to first byte"));
+        stages.put(CrawlEvents.FETCH + ".body", new Stage("  body"));
+        stages.put(CrawlEvents.PARSE, new Stage("Parse"));
+        stages.put(CrawlEvents.LINK_EXTRACTION, new Stage("Link extraction"));
+        stages.put(CrawlEvents.LOCK, new Stage("Lock wait"));
+        stages.put(CrawlEvents.ENQUEUE, new Stage("Enqueue"));
+        stages.put(CrawlEvents.DEQUEUE, new Stage("Dequeue"));
+    }
+
+    /**
+     * Reads the crawl events of the specified recording file, ignoring any other event.
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static CrawlProfileSummary read(Path file) throws IOException {
+        CrawlProfileSummary summary = new CrawlProfileSummary();
+        try (RecordingFile recordingFile = new RecordingFile(file)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent event = recordingFile.readEvent();
+                String name = event.getEventType().getName();
+                Stage stage = summary.stages.get(name);
+                if (stage == null) {
+                    continue;
+                }
+                stage.add(event.getDuration().toNanos(), event.getLong("bytes"), event.getInt("links"));
+                if (name.equals(CrawlEvents.FETCH)) {
+                    summary.stages.get(name + ".connect").add(event.getDuration("connectDuration").toNanos(), 0, 0);
+                    summary.stages.get(name + ".ttfb").add(event.getDuration("timeToFirstByte").toNanos(), 0, 0);
+                    summary.stages.get(name + ".body").add(event.getDuration("bodyDuration").toNanos(), 0, 0);
+                }
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Returns the total time in ms of the specified stage, by event name.
+     * @param eventName
+     * @return
+     */
+    double getTotalMillis(String eventName) {
+        Stage stage = stages.get(eventName);
+        return stage != null ? stage.totalNanos / 1e6 : 0;
+    }
+
+    /**
+     * Returns the number of events of the specified stage, by event name.
+     * @param eventName
+     * @return
+     */
+    long getCount(String eventName) {
+        Stage stage = stages.get(eventName);
+        return stage != null ? stage.count : 0;
+    }
+
+    @Override
+    public String toString() {
+        long stagesNanos = stages.entrySet().stream()
+                .filter(entry -> !entry.getKey().startsWith(CrawlEvents.FETCH + "."))
+                .mapToLong(entry -> entry.getValue().totalNanos)
+                .sum();
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-22s %8s %12s %10s %10s %7s %12s %8s%n",
+                "Stage", "Count", "Total (ms)", "Avg (ms)", "Max (ms)", "Share", "Bytes", "Links"));
+        for (Map.Entry<String, Stage> entry : stages.entrySet()) {
+            Stage stage = entry.getValue();
+            builder.append(String.format("%-22s %8d %12.1f %10.2f %10.2f %6.1f%% %12d %8d%n",
+                    stage.label, stage.count, stage.totalNanos / 1e6,
+                    stage.count == 0 ? 0 : stage.totalNanos / 1e6 / stage.count, stage.maxNanos / 1e6,
+                    stagesNanos == 0 ? 0 : 100.0 * stage.totalNanos / stagesNanos, stage.bytes, stage.links));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Prints the summary of a recording file, e.g. java -cp ... com.scerra.utils.simplecrawler.CrawlProfileSummary crawl.jfr
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: CrawlProfileSummary recording.jfr");
+            System.exit(1);
+        }
+        System.out.print(read(Paths.get(args[0])));
+    }
+
+    private static class Stage {
+        private final String label;
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+        private long bytes;
+        private long links;
+
+        private Stage(String label) {
+            this.label = label;
+        }
+
+        private void add(long nanos, long bytes, int links) {
+            count += 1;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            this.bytes += bytes;
+            this.links += links;
+        }
+    }
+}
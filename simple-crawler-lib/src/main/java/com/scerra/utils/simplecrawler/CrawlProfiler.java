@@ -0,0 +1,40 @@
+package com.scerra.utils.simplecrawler;
+
+import jdk.jfr.Recording;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Records the crawl events of a crawl to a Java Flight Recorder file, written when the profiler is closed.
+ * Only the crawl events are enabled, without stack traces, to keep the profiling overhead low.
+ */
+class CrawlProfiler implements Closeable {
+    private final Recording recording;
+    private final Path file;
+
+    CrawlProfiler(String file) throws IOException {
+        this.file = Paths.get(file);
+        recording = new Recording();
+        recording.setName("Simple Crawler");
+        for (Class<? extends CrawlEvents.CrawlEvent> type : CrawlEvents.TYPES) {
+            recording.enable(type).withThreshold(Duration.ZERO);
+        }
+        recording.setDestination(this.file);
+        recording.start();
+    }
+
+    /**
+     * Stops the recording, writing it to the profiler file.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        recording.stop();
+        recording.close();
+        System.out.println(String.format("Crawl profile written to %s", file));
+    }
+}
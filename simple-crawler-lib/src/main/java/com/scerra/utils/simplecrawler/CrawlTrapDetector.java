@@ -0,0 +1,376 @@
+package com.scerra.utils.simplecrawler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detects crawl traps, such as calendars, session id permutations, faceted filters or ever growing relative paths,
+ * from online statistics of the crawled URL patterns. A pattern is the URL template obtained by replacing numeric
+ * runs (including dates) and hash like path segments, and by only keeping the sorted names of the query parameters.
+ * Fetches and new links yielded per pattern are counted in count-min sketches, so memory is bounded whatever the
+ * number of patterns. New links are split between the ones of the same pattern as the page yielding them and the
+ * ones of other patterns.
+ * A trap keeps generating new URLs of its own pattern, e.g. the next month of a calendar or another filter combination,
+ * while leading to little else. So once a pattern has been fetched crawlTrapMinFetches times, it is considered a trap
+ * if its pages yielded at least one new URL of the same pattern every two fetches, and new links to other patterns
+ * at no more than crawlTrapMinNewLinkRate times the crawl-wide average of new links per fetch. Leaf pages, which yield
+ * no new URL of their own pattern, are never trapped. Trapped URLs are throttled, then dropped after twice as many
+ * fetches.
+ * URLs deeper than crawlTrapMaxPathDepth, or repeating a path segment more than crawlTrapMaxRepeatedSegments times,
+ * are always dropped.
+ * Not thread safe: the crawler only accesses it while holding its mutex.
+ */
+class CrawlTrapDetector {
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 4096;
+    /* Upper bound of the patterns with a decision kept for reporting and throttling. Decisions on further patterns
+     * are reported together, as a single entry. */
+    private static final int MAX_TRAPPED_PATTERNS = 1024;
+    private static final String UNTRACKED_PATTERNS = "(untracked patterns)";
+
+    /* FNV-1a 64 bit hashing. */
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    /* Template markers, hashed in place of the chars they replace. */
+    private static final char NUMBER = '\u0001';
+    private static final char HASH = '\u0002';
+    private static final char PATH_PARAMETERS = '\u0003';
+
+    private final CrawlerConfig config;
+    private final CountMinSketch fetches = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+    private final CountMinSketch sameNewLinks = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+    private final CountMinSketch otherNewLinks = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+    private long totalFetches;
+    private long totalNewLinks;
+    private final Map<Long, Entry> trappedPatterns = new LinkedHashMap<>();
+    /* Decisions on the patterns beyond MAX_TRAPPED_PATTERNS, which are dropped since they can't be throttled. */
+    private Entry untrackedPatterns;
+    /* Scan state, reused across scans to avoid allocating per link. */
+    private final long[] segmentHashes;
+    private int scannedDepth;
+    private int scannedRepeats;
+
+    CrawlTrapDetector(CrawlerConfig config) {
+        this.config = config;
+        this.segmentHashes = new long[Math.max(config.getCrawlTrapMaxPathDepth(), 1)];
+    }
+
+    /**
+     * Returns the pattern key of a URL.
+     * @param url
+     * @return
+     */
+    long patternOf(String url) {
+        return scan(url, null);
+    }
+
+    void recordFetch(long pattern) {
+        fetches.add(pattern, 1);
+        totalFetches += 1;
+    }
+
+    /**
+     * Returns true if the specified URL, found on a page of the source pattern, may be enqueued, false if it
+     * belongs to a crawl trap. Enqueued URLs are counted as new links of the source pattern.
+     * Each decision taken on a pattern is reported when taken, or changed.
+     * @param url
+     * @param sourcePattern
+     * @return
+     */
+    boolean allowEnqueue(String url, long sourcePattern) {
+        long pattern = scan(url, null);
+        if (!isAllowed(pattern, url)) {
+            return false;
+        }
+        (pattern == sourcePattern ? sameNewLinks : otherNewLinks).add(sourcePattern, 1);
+        totalNewLinks += 1;
+        return true;
+    }
+
+    private boolean isAllowed(long pattern, String url) {
+        if (scannedDepth > config.getCrawlTrapMaxPathDepth()) {
+            return reject(pattern, url, CrawlTrapStats.Action.DROP, String.format("path depth %d", scannedDepth), 0, 0, true);
+        }
+        if (scannedRepeats > config.getCrawlTrapMaxRepeatedSegments()) {
+            return reject(pattern, url, CrawlTrapStats.Action.DROP, String.format("path segment repeated %d times", scannedRepeats), 0, 0, true);
+        }
+
+        int fetchCount = fetches.estimate(pattern);
+        if (fetchCount >= config.getCrawlTrapMinFetches()) {
+            int sameNewLinkCount = sameNewLinks.estimate(pattern);
+            int otherNewLinkCount = otherNewLinks.estimate(pattern);
+            double crawlNewLinkRate = (double) totalNewLinks / totalFetches;
+            if (2L * sameNewLinkCount >= fetchCount &&
+                    otherNewLinkCount <= fetchCount * crawlNewLinkRate * config.getCrawlTrapMinNewLinkRate()) {
+                CrawlTrapStats.Action action = fetchCount >= 2L * config.getCrawlTrapMinFetches() ?
+                        CrawlTrapStats.Action.DROP : CrawlTrapStats.Action.THROTTLE;
+                String reason = String.format("%d fetches yielded %d new links of the same pattern and %d of other patterns, crawl average %.2f per fetch",
+                        fetchCount, sameNewLinkCount, otherNewLinkCount, crawlNewLinkRate);
+                return reject(pattern, url, action, reason, fetchCount, otherNewLinkCount, false);
+            }
+            Entry entry = trappedPatterns.get(pattern);
+            if (entry != null && !entry.structural) {
+                // Throttled URLs yielded enough new links.
+                trappedPatterns.remove(pattern);
+                System.out.println(String.format("Crawl trap pattern %s released, %d fetches yielded %d new links of other patterns",
+                        entry.template, fetchCount, otherNewLinkCount));
+            }
+        }
+        return true;
+    }
+
+    private boolean reject(long pattern, String url, CrawlTrapStats.Action action, String reason, int fetchCount, int newLinkCount,
+                           boolean structural) {
+        Entry entry = trappedPatterns.get(pattern);
+        if (entry == null && trappedPatterns.size() >= MAX_TRAPPED_PATTERNS) {
+            // Too many patterns to keep track of, so they can't be throttled either: drop them, reporting them together.
+            if (untrackedPatterns == null) {
+                untrackedPatterns = new Entry(UNTRACKED_PATTERNS, false);
+                untrackedPatterns.action = CrawlTrapStats.Action.DROP;
+                System.out.println(String.format("Crawl trap patterns beyond %d are dropped without being tracked, starting with %s, %s",
+                        MAX_TRAPPED_PATTERNS, scanTemplate(url), reason));
+            }
+            untrackedPatterns.reason = String.format("last %s, %s", scanTemplate(url), reason);
+            untrackedPatterns.fetchCount = fetchCount;
+            untrackedPatterns.newLinkCount = newLinkCount;
+            untrackedPatterns.rejectedCount += 1;
+            return false;
+        }
+        if (entry == null) {
+            entry = new Entry(scanTemplate(url), structural);
+            trappedPatterns.put(pattern, entry);
+        }
+        if (entry.action != action) {
+            entry.action = action;
+            entry.reason = reason;
+            System.out.println(String.format("Crawl trap pattern %s %s, %s", entry.template,
+                    action == CrawlTrapStats.Action.DROP ? "dropped" : "throttled", reason));
+        }
+        entry.fetchCount = fetchCount;
+        entry.newLinkCount = newLinkCount;
+
+        if (action == CrawlTrapStats.Action.THROTTLE && ++entry.throttledCount % config.getCrawlTrapThrottleInterval() == 0) {
+            return true;
+        }
+        entry.rejectedCount += 1;
+        return false;
+    }
+
+    /**
+     * Returns a snapshot of the patterns detected as crawl traps.
+     * @return
+     */
+    List<CrawlTrapStats> getStats() {
+        List<CrawlTrapStats> stats = new ArrayList<>();
+        for (Entry entry : trappedPatterns.values()) {
+            stats.add(new CrawlTrapStats(entry.template, entry.action, entry.reason, entry.fetchCount,
+                    entry.newLinkCount, entry.rejectedCount));
+        }
+        if (untrackedPatterns != null) {
+            stats.add(new CrawlTrapStats(untrackedPatterns.template, untrackedPatterns.action, untrackedPatterns.reason,
+                    untrackedPatterns.fetchCount, untrackedPatterns.newLinkCount, untrackedPatterns.rejectedCount));
+        }
+        return stats;
+    }
+
+    void clear() {
+        fetches.clear();
+        sameNewLinks.clear();
+        otherNewLinks.clear();
+        totalFetches = 0;
+        totalNewLinks = 0;
+        trappedPatterns.clear();
+        untrackedPatterns = null;
+    }
+
+    private String scanTemplate(String url) {
+        StringBuilder template = new StringBuilder();
+        scan(url, template);
+        return template.toString();
+    }
+
+    /**
+     * Scans the URL chars once, hashing its template and measuring its path depth and most repeated path segment.
+     * The template is also appended to the specified builder, if not null.
+     */
+    private long scan(String url, StringBuilder template) {
+        long hash = FNV_OFFSET;
+        int length = url.length();
+        int i = url.indexOf("://");
+        i = i < 0 ? 0 : i + 3;
+
+        /* Host */
+        for (; i < length; i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            hash = hash(hash, Character.toLowerCase(c));
+            append(template, Character.toLowerCase(c));
+        }
+
+        /* Path */
+        scannedDepth = 0;
+        scannedRepeats = 0;
+        while (i < length && url.charAt(i) == '/') {
+            i++;
+            int segmentStart = i;
+            while (i < length && url.charAt(i) != '/' && url.charAt(i) != '?' && url.charAt(i) != '#') {
+                i++;
+            }
+            hash = hash(hash, '/');
+            append(template, '/');
+            if (i == segmentStart) {
+                continue;
+            }
+            hash = hashSegment(hash, url, segmentStart, i, template);
+            countRepeats(url, segmentStart, i);
+        }
+
+        /* Query parameter names, combined regardless of their order. */
+        if (i < length && url.charAt(i) == '?') {
+            long names = 0;
+            List<String> templateNames = template != null ? new ArrayList<>() : null;
+            i++;
+            while (i < length && url.charAt(i) != '#') {
+                int nameStart = i;
+                long nameHash = FNV_OFFSET;
+                while (i < length && url.charAt(i) != '=' && url.charAt(i) != '&' && url.charAt(i) != ';' && url.charAt(i) != '#') {
+                    nameHash = hash(nameHash, url.charAt(i));
+                    i++;
+                }
+                if (i > nameStart) {
+                    names += mix(nameHash);
+                    if (templateNames != null) {
+                        templateNames.add(url.substring(nameStart, i));
+                    }
+                }
+                while (i < length && url.charAt(i) != '&' && url.charAt(i) != ';' && url.charAt(i) != '#') {
+                    i++;
+                }
+                if (i < length && url.charAt(i) != '#') {
+                    i++;
+                }
+            }
+            hash = (hash ^ names) * FNV_PRIME;
+            if (templateNames != null) {
+                Collections.sort(templateNames);
+                template.append('?').append(String.join("&", templateNames));
+            }
+        }
+        return hash;
+    }
+
+    private long hashSegment(long hash, String url, int start, int end, StringBuilder template) {
+        if (isHashLike(url, start, end)) {
+            append(template, "{hash}");
+            return hash(hash, HASH);
+        }
+        boolean inNumber = false;
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == ';') {
+                // Path parameters, e.g. ;jsessionid=..., are left out of the template.
+                append(template, ";{params}");
+                return hash(hash, PATH_PARAMETERS);
+            }
+            boolean isDigit = c >= '0' && c <= '9';
+            if (isDigit && !inNumber) {
+                hash = hash(hash, NUMBER);
+                append(template, "{n}");
+            } else if (!isDigit) {
+                hash = hash(hash, c);
+                append(template, c);
+            }
+            inNumber = isDigit;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns true for segments looking like hashes, UUIDs or session ids: at least 8 hex chars and dashes,
+     * or at least 16 alphanumeric chars, dashes and underscores, mixing letters and digits.
+     */
+    private static boolean isHashLike(String url, int start, int end) {
+        if (end - start < 8) {
+            return false;
+        }
+        boolean hasDigit = false;
+        boolean hasLetter = false;
+        boolean allHex = true;
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+            } else if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z') {
+                hasLetter = true;
+                allHex &= c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+            } else if (c != '-' && c != '_') {
+                return false;
+            }
+        }
+        return hasDigit && hasLetter && (allHex || end - start >= 16);
+    }
+
+    /**
+     * Counts the occurrences of the segment among the previous path segments, keeping the highest count.
+     */
+    private void countRepeats(String url, int start, int end) {
+        long segmentHash = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            segmentHash = hash(segmentHash, url.charAt(i));
+        }
+        if (scannedDepth < segmentHashes.length) {
+            int occurrences = 1;
+            for (int i = 0; i < scannedDepth; i++) {
+                if (segmentHashes[i] == segmentHash) {
+                    occurrences++;
+                }
+            }
+            segmentHashes[scannedDepth] = segmentHash;
+            scannedRepeats = Math.max(scannedRepeats, occurrences);
+        }
+        scannedDepth++;
+    }
+
+    private static long hash(long hash, char c) {
+        return (hash ^ c) * FNV_PRIME;
+    }
+
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        return h ^ (h >>> 33);
+    }
+
+    private static void append(StringBuilder template, char c) {
+        if (template != null) {
+            template.append(c);
+        }
+    }
+
+    private static void append(StringBuilder template, String s) {
+        if (template != null) {
+            template.append(s);
+        }
+    }
+
+    private static class Entry {
+        private final String template;
+        /* Whether the pattern was trapped by its path structure, rather than by its statistics. */
+        private final boolean structural;
+        private CrawlTrapStats.Action action;
+        private String reason;
+        private int fetchCount;
+        private int newLinkCount;
+        private int throttledCount;
+        private int rejectedCount;
+
+        private Entry(String template, boolean structural) {
+            this.template = template;
+            this.structural = structural;
+        }
+    }
+}
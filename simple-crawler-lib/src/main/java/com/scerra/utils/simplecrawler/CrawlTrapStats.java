@@ -0,0 +1,78 @@
+package com.scerra.utils.simplecrawler;
+
+/**
+ * A point in time snapshot of a URL pattern detected as a crawl trap, exposed for monitoring.
+ */
+public class CrawlTrapStats {
+    public enum Action {
+        /* Only one URL out of crawlTrapThrottleInterval is crawled. */
+        THROTTLE,
+        /* No more URL is crawled. */
+        DROP
+    }
+
+    private final String pattern;
+    private final Action action;
+    private final String reason;
+    private final int fetchCount;
+    private final int newLinkCount;
+    private final int rejectedCount;
+
+    public CrawlTrapStats(String pattern, Action action, String reason, int fetchCount, int newLinkCount, int rejectedCount) {
+        this.pattern = pattern;
+        this.action = action;
+        this.reason = reason;
+        this.fetchCount = fetchCount;
+        this.newLinkCount = newLinkCount;
+        this.rejectedCount = rejectedCount;
+    }
+
+    /**
+     * Returns the URL template of the pattern, e.g. "example.com/events/{n}?month" for
+     * "https://example.com/events/2021?month=3". Numeric runs are replaced by {n}, hash or session id like
+     * segments by {hash}, and query parameters by their sorted names.
+     * @return
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Returns the estimated number of pages fetched for this pattern when it was last checked.
+     * @return
+     */
+    public int getFetchCount() {
+        return fetchCount;
+    }
+
+    /**
+     * Returns the estimated number of new links to other patterns yielded by the pages of this pattern when it was
+     * last checked.
+     * @return
+     */
+    public int getNewLinkCount() {
+        return newLinkCount;
+    }
+
+    /**
+     * Returns the number of URLs matching this pattern that were not enqueued.
+     * @return
+     */
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{pattern: %s, action: %s, reason: %s, fetchCount: %d, newLinkCount: %d, rejectedCount: %d}",
+                pattern, action, reason, fetchCount, newLinkCount, rejectedCount);
+    }
+}
@@ -4,12 +4,52 @@ public class CrawlerConfig {
     private int requestTimeout;
     private int maxConcurrentRequests;
     private String userAgent;
+    private int maxRedirects;
+    private int maxCachedRedirects;
+    private boolean circuitBreakerEnabled;
+    private int circuitBreakerPathDepth;
+    private int circuitBreakerWindowSize;
+    private int circuitBreakerMinSamples;
+    private double circuitBreakerFailureRateThreshold;
+    private int circuitBreakerSlowCallDuration;
+    private double circuitBreakerSlowCallRateThreshold;
+    private int circuitBreakerOpenDuration;
+    private int circuitBreakerMaxFailedProbes;
+    private String warcRecordingDirectory;
+    private long warcMaxFileSize;
+    private ScopeRules scopeRules;
+    private String flightRecordingFile;
+    private boolean crawlTrapDetectionEnabled;
+    private int crawlTrapMinFetches;
+    private double crawlTrapMinNewLinkRate;
+    private int crawlTrapThrottleInterval;
+    private int crawlTrapMaxPathDepth;
+    private int crawlTrapMaxRepeatedSegments;
 
     public CrawlerConfig() {
         /* Set default config data. */
         this.requestTimeout = 15000;
         this.maxConcurrentRequests = 40;
         this.userAgent = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/89.0.4389.114 Safari/537.36";
+        this.maxRedirects = 10;
+        this.maxCachedRedirects = 10000;
+        this.circuitBreakerEnabled = false;
+        this.circuitBreakerPathDepth = 1;
+        this.circuitBreakerWindowSize = 20;
+        this.circuitBreakerMinSamples = 10;
+        this.circuitBreakerFailureRateThreshold = 0.5;
+        this.circuitBreakerSlowCallDuration = 5000;
+        this.circuitBreakerSlowCallRateThreshold = 0.5;
+        this.circuitBreakerOpenDuration = 30000;
+        this.circuitBreakerMaxFailedProbes = 3;
+        this.warcMaxFileSize = 1024L * 1024 * 1024;
+        this.scopeRules = new ScopeRules();
+        this.crawlTrapDetectionEnabled = false;
+        this.crawlTrapMinFetches = 200;
+        this.crawlTrapMinNewLinkRate = 0.5;
+        this.crawlTrapThrottleInterval = 10;
+        this.crawlTrapMaxPathDepth = 16;
+        this.crawlTrapMaxRepeatedSegments = 3;
     }
 
     public int getRequestTimeout() {
@@ -38,4 +78,298 @@ public class CrawlerConfig {
         this.userAgent = userAgent;
         return this;
     }
+
+    public int getMaxRedirects() {
+        return maxRedirects;
+    }
+
+    /**
+     * Sets the maximum number of redirects followed starting from a crawled page.
+     * @param maxRedirects
+     * @return
+     */
+    public CrawlerConfig setMaxRedirects(int maxRedirects) {
+        this.maxRedirects = maxRedirects;
+        return this;
+    }
+
+    public int getMaxCachedRedirects() {
+        return maxCachedRedirects;
+    }
+
+    /**
+     * Sets the maximum number of permanent redirect chains kept in the redirect cache, the least recently used
+     * ones being evicted first. The cache is shared by all the crawlers of a {@link CrawlerEngine}.
+     * @param maxCachedRedirects
+     * @return
+     */
+    public CrawlerConfig setMaxCachedRedirects(int maxCachedRedirects) {
+        this.maxCachedRedirects = maxCachedRedirects;
+        return this;
+    }
+
+    public boolean isCircuitBreakerEnabled() {
+        return circuitBreakerEnabled;
+    }
+
+    /**
+     * Enables per host path prefix circuit breakers, disabled by default, deferring requests to degraded parts of a site.
+     * @param circuitBreakerEnabled
+     * @return
+     */
+    public CrawlerConfig setCircuitBreakerEnabled(boolean circuitBreakerEnabled) {
+        this.circuitBreakerEnabled = circuitBreakerEnabled;
+        return this;
+    }
+
+    public int getCircuitBreakerPathDepth() {
+        return circuitBreakerPathDepth;
+    }
+
+    /**
+     * Sets the number of leading path segments that, together with the host, identify a circuit breaker.
+     * With 0 there is a single breaker per host.
+     * @param circuitBreakerPathDepth
+     * @return
+     */
+    public CrawlerConfig setCircuitBreakerPathDepth(int circuitBreakerPathDepth) {
+        this.circuitBreakerPathDepth = circuitBreakerPathDepth;
+        return this;
+    }
+
+    public int getCircuitBreakerWindowSize() {
+        return circuitBreakerWindowSize;
+    }
+
+    /**
+     * Sets the number of latest request outcomes kept in the rolling window of each circuit breaker.
+     * @param circuitBreakerWindowSize
+     * @return
+     */
+    public CrawlerConfig setCircuitBreakerWindowSize(int circuitBreakerWindowSize) {
+        this.circuitBreakerWindowSize = circuitBreakerWindowSize;
+        return this;
+    }
+
+    public int getCircuitBreakerMinSamples() {
+        return circuitBreakerMinSamples;
+    }
+
+    /**
+     * Sets the minimum number of outcomes in the rolling window before a circuit breaker may open.
+     * @param circuitBreakerMinSamples
+     * @return
+     */
+    public CrawlerConfig setCircuitBreakerMinSamples(int circuitBreakerMinSamples) {
+        this.circuitBreakerMinSamples = circuitBreakerMinSamples;
+        return this;
+    }
+
+    public double getCircuitBreakerFailureRateThreshold() {
+        return circuitBreakerFailureRateThreshold;
+    }
+
+    /**
+     * Sets the rate of failed requests (no response, 429 or 5xx status) opening a circuit breaker.
+     * @param circuitBreakerFailureRateThreshold
+     * @return
+     */
+    public CrawlerConfig setCircuitBreakerFailureRateThreshold(double circuitBreakerFailureRateThreshold) {
+        this.circuitBreakerFailureRateThreshold = circuitBreakerFailureRateThreshold;
+        return this;
+    }
+
+    public int getCircuitBreakerSlowCallDuration() {
+        return circuitBreakerSlowCallDuration;
+    }
+
+    /**
+     * Sets the latency in ms above which a request is considered slow.
+     * @param circuitBreakerSlowCallDuration
+     * @return
+     */
+    public CrawlerConfig setCircuitBreakerSlowCallDuration(int circuitBreakerSlowCallDuration) {
+        this.circuitBreakerSlowCallDuration = circuitBreakerSlowCallDuration;
+        return this;
+    }
+
+    public double getCircuitBreakerSlowCallRateThreshold() {
+        return circuitBreakerSlowCallRateThreshold;
+    }
+
+    /**
+     * Sets the rate of slow requests opening a circuit breaker.
+     * @param circuitBreakerSlowCallRateThreshold
+     * @return
+     */
+    public CrawlerConfig setCircuitBreakerSlowCallRateThreshold(double circuitBreakerSlowCallRateThreshold) {
+        this.circuitBreakerSlowCallRateThreshold = circuitBreakerSlowCallRateThreshold;
+        return this;
+    }
+
+    public int getCircuitBreakerOpenDuration() {
+        return circuitBreakerOpenDuration;
+    }
+
+    /**
+     * Sets the time in ms a circuit breaker stays open before sending a probe request.
+     * It doubles after every failed probe, up to 16 times this value.
+     * @param circuitBreakerOpenDuration
+     * @return
+     */
+    public CrawlerConfig setCircuitBreakerOpenDuration(int circuitBreakerOpenDuration) {
+        this.circuitBreakerOpenDuration = circuitBreakerOpenDuration;
+        return this;
+    }
+
+    public int getCircuitBreakerMaxFailedProbes() {
+        return circuitBreakerMaxFailedProbes;
+    }
+
+    /**
+     * Sets the number of failed probe requests in a row after which a circuit breaker gives up for the rest of the crawl:
+     * its deferred pages, and the ones later found for it, are dropped without being crawled.
+     * @param circuitBreakerMaxFailedProbes
+     * @return
+     */
+    public CrawlerConfig setCircuitBreakerMaxFailedProbes(int circuitBreakerMaxFailedProbes) {
+        this.circuitBreakerMaxFailedProbes = circuitBreakerMaxFailedProbes;
+        return this;
+    }
+
+    public String getWarcRecordingDirectory() {
+        return warcRecordingDirectory;
+    }
+
+    /**
+     * Enables recording of every crawled request/response pair to WARC files in the specified directory.
+     * Recording is disabled when this is null.
+     * @param warcRecordingDirectory
+     * @return
+     */
+    public CrawlerConfig setWarcRecordingDirectory(String warcRecordingDirectory) {
+        this.warcRecordingDirectory = warcRecordingDirectory;
+        return this;
+    }
+
+    public long getWarcMaxFileSize() {
+        return warcMaxFileSize;
+    }
+
+    public CrawlerConfig setWarcMaxFileSize(long warcMaxFileSize) {
+        this.warcMaxFileSize = warcMaxFileSize;
+        return this;
+    }
+
+    public ScopeRules getScopeRules() {
+        return scopeRules;
+    }
+
+    /**
+     * Sets the rules deciding which links are crawled. By default, only links on the host of the root URL are crawled.
+     * @param scopeRules
+     * @return
+     */
+    public CrawlerConfig setScopeRules(ScopeRules scopeRules) {
+        this.scopeRules = scopeRules;
+        return this;
+    }
+
+    public String getFlightRecordingFile() {
+        return flightRecordingFile;
+    }
+
+    /**
+     * Enables profiling: each crawl is recorded with Java Flight Recorder to the specified file, which contains
+     * an event for every fetch, parse, link extraction, lock wait and queue operation.
+     * Profiling is disabled when this is null.
+     * @param flightRecordingFile
+     * @return
+     */
+    public CrawlerConfig setFlightRecordingFile(String flightRecordingFile) {
+        this.flightRecordingFile = flightRecordingFile;
+        return this;
+    }
+
+    public boolean isCrawlTrapDetectionEnabled() {
+        return crawlTrapDetectionEnabled;
+    }
+
+    /**
+     * Enables crawl trap detection, disabled by default: URL patterns that keep yielding new URLs of their own pattern
+     * while leading to few other new links are throttled, then dropped, and too deep or self repeating URL paths are dropped.
+     * @param crawlTrapDetectionEnabled
+     * @return
+     */
+    public CrawlerConfig setCrawlTrapDetectionEnabled(boolean crawlTrapDetectionEnabled) {
+        this.crawlTrapDetectionEnabled = crawlTrapDetectionEnabled;
+        return this;
+    }
+
+    public int getCrawlTrapMinFetches() {
+        return crawlTrapMinFetches;
+    }
+
+    /**
+     * Sets the number of fetches of a URL pattern after which its new link rate is checked.
+     * Patterns still yielding too few new links after twice as many fetches are dropped.
+     * @param crawlTrapMinFetches
+     * @return
+     */
+    public CrawlerConfig setCrawlTrapMinFetches(int crawlTrapMinFetches) {
+        this.crawlTrapMinFetches = crawlTrapMinFetches;
+        return this;
+    }
+
+    public double getCrawlTrapMinNewLinkRate() {
+        return crawlTrapMinNewLinkRate;
+    }
+
+    /**
+     * Sets the fraction of the crawl-wide average of new links per fetch that a self propagating URL pattern must exceed,
+     * counting new links of other patterns only, not to be considered a crawl trap.
+     * @param crawlTrapMinNewLinkRate
+     * @return
+     */
+    public CrawlerConfig setCrawlTrapMinNewLinkRate(double crawlTrapMinNewLinkRate) {
+        this.crawlTrapMinNewLinkRate = crawlTrapMinNewLinkRate;
+        return this;
+    }
+
+    public int getCrawlTrapThrottleInterval() {
+        return crawlTrapThrottleInterval;
+    }
+
+    /**
+     * Sets the throttling of a URL pattern detected as a crawl trap: only one URL out of this number is enqueued.
+     * @param crawlTrapThrottleInterval
+     * @return
+     */
+    public CrawlerConfig setCrawlTrapThrottleInterval(int crawlTrapThrottleInterval) {
+        this.crawlTrapThrottleInterval = crawlTrapThrottleInterval;
+        return this;
+    }
+
+    public int getCrawlTrapMaxPathDepth() {
+        return crawlTrapMaxPathDepth;
+    }
+
+    public CrawlerConfig setCrawlTrapMaxPathDepth(int crawlTrapMaxPathDepth) {
+        this.crawlTrapMaxPathDepth = crawlTrapMaxPathDepth;
+        return this;
+    }
+
+    public int getCrawlTrapMaxRepeatedSegments() {
+        return crawlTrapMaxRepeatedSegments;
+    }
+
+    /**
+     * Sets the number of times a same segment may appear in a URL path, e.g. 2 for /a/b/a/b.
+     * @param crawlTrapMaxRepeatedSegments
+     * @return
+     */
+    public CrawlerConfig setCrawlTrapMaxRepeatedSegments(int crawlTrapMaxRepeatedSegments) {
+        this.crawlTrapMaxRepeatedSegments = crawlTrapMaxRepeatedSegments;
+        return this;
+    }
 }
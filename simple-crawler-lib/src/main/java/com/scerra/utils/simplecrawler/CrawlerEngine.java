@@ -0,0 +1,72 @@
+package com.scerra.utils.simplecrawler;
+
+import org.asynchttpclient.AsyncHttpClient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.asynchttpclient.Dsl.asyncHttpClient;
+import static org.asynchttpclient.Dsl.config;
+
+/**
+ * Holds the resources shared by the crawlers of a long-running process: a single HTTP client, whose connection pool
+ * stays warm across crawls, a single thread pool running the HTTP response handlers, and a single redirect cache,
+ * so that permanent redirects found by a crawl are resolved without requests by the following ones.
+ * Crawlers created by the engine may run concurrently and do not close the shared resources.
+ */
+public class CrawlerEngine implements Closeable {
+    private final AsyncHttpClient asyncHttpClient;
+    private final ExecutorService responseHandlerExecutor;
+    private final RedirectCache redirectCache;
+
+    /**
+     * Creates an engine whose HTTP client uses the request timeout of the specified config,
+     * and whose redirect cache holds up to its maximum number of cached redirects.
+     * @param config
+     */
+    public CrawlerEngine(CrawlerConfig config) {
+        this(asyncHttpClient(config().setRequestTimeout(config.getRequestTimeout())), config);
+    }
+
+    /**
+     * Creates an engine using the specified HTTP client, which is closed together with the engine.
+     * @param asyncHttpClient
+     */
+    public CrawlerEngine(AsyncHttpClient asyncHttpClient) {
+        this(asyncHttpClient, new CrawlerConfig());
+    }
+
+    /**
+     * Creates an engine using the specified HTTP client, which is closed together with the engine,
+     * and whose redirect cache holds up to the maximum number of cached redirects of the specified config.
+     * @param asyncHttpClient
+     * @param config
+     */
+    public CrawlerEngine(AsyncHttpClient asyncHttpClient, CrawlerConfig config) {
+        this.asyncHttpClient = asyncHttpClient;
+        this.responseHandlerExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.redirectCache = new RedirectCache(config.getMaxCachedRedirects());
+    }
+
+    /**
+     * Creates a crawler using the shared resources of this engine. The redirect cache size is the one of the engine,
+     * any other setting, including the request timeout, is taken from the specified config.
+     * @param config
+     * @return
+     */
+    public SimpleCrawler createCrawler(CrawlerConfig config) {
+        return new SimpleCrawler(asyncHttpClient, config, responseHandlerExecutor, redirectCache);
+    }
+
+    /**
+     * Shuts down the response handler thread pool and closes the HTTP client.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        responseHandlerExecutor.shutdown();
+        asyncHttpClient.close();
+    }
+}
@@ -0,0 +1,102 @@
+package com.scerra.utils.simplecrawler;
+
+import io.netty.channel.Channel;
+import org.asynchttpclient.AsyncCompletionHandlerBase;
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.Response;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Tracks the time of a page fetch and its fetch event. When the crawl is profiled, the handler is passed to the
+ * HTTP client to also time the connect, time to first byte and body phases of the request.
+ * The fetch ends when the response completes, on the completing thread, so that its duration is the sum of its phases
+ * and excludes the time spent waiting for a response handler thread.
+ */
+class FetchTimingHandler extends AsyncCompletionHandlerBase {
+    private final CrawlEvents.Fetch event = new CrawlEvents.Fetch();
+    private volatile long startNanos;
+    private volatile long connectedNanos;
+    private volatile long firstByteNanos;
+    private volatile long completedNanos;
+
+    /**
+     * Begins the fetch event, right before the request is sent.
+     */
+    void begin() {
+        event.begin();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Marks the response as completed and ends the fetch event, unless the client already reported it.
+     * Registered as a listener of the response future, run by the thread completing it.
+     */
+    synchronized void markCompleted() {
+        if (completedNanos == 0) {
+            event.end();
+            completedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Returns the time from the request being sent to the response being completed, excluding the time spent
+     * waiting for a response handler thread and processing the response.
+     * @return
+     */
+    long getLatencyMillis() {
+        return ((completedNanos != 0 ? completedNanos : System.nanoTime()) - startNanos) / 1_000_000;
+    }
+
+    @Override
+    public void onTcpConnectSuccess(InetSocketAddress remoteAddress, Channel connection) {
+        connectedNanos = System.nanoTime();
+    }
+
+    @Override
+    public void onTlsHandshakeSuccess() {
+        connectedNanos = System.nanoTime();
+    }
+
+    @Override
+    public void onConnectionPooled(Channel connection) {
+        connectedNanos = System.nanoTime();
+    }
+
+    @Override
+    public AsyncHandler.State onStatusReceived(HttpResponseStatus status) throws Exception {
+        firstByteNanos = System.nanoTime();
+        return super.onStatusReceived(status);
+    }
+
+    @Override
+    public Response onCompleted(Response response) throws Exception {
+        markCompleted();
+        return super.onCompleted(response);
+    }
+
+    boolean shouldCommit() {
+        return event.shouldCommit();
+    }
+
+    /**
+     * Commits the fetch event, if it should be. Phases the client did not report, e.g. for a replayed response,
+     * are counted in the following phase.
+     * @param url
+     * @param statusCode
+     * @param bytes
+     * @param links
+     */
+    void commit(String url, int statusCode, long bytes, int links) {
+        if (event.shouldCommit()) {
+            long connectEnd = connectedNanos != 0 ? connectedNanos : startNanos;
+            long firstByte = firstByteNanos != 0 ? firstByteNanos : connectEnd;
+            event.statusCode = statusCode;
+            event.connectDuration = connectEnd - startNanos;
+            event.timeToFirstByte = firstByte - connectEnd;
+            event.bodyDuration = completedNanos - firstByte;
+            event.commit(url, bytes, links);
+        }
+    }
+}
@@ -3,6 +3,12 @@ package com.scerra.utils.simplecrawler;
 public class HttpConstants {
     public static final int HTTP_STATUS_MOVED_PERMANENTLY = 301;
     public static final int HTTP_STATUS_MOVED_TEMPORARILY = 302;
+    public static final int HTTP_STATUS_SEE_OTHER = 303;
+    public static final int HTTP_STATUS_NOT_MODIFIED = 304;
+    public static final int HTTP_STATUS_TEMPORARY_REDIRECT = 307;
+    public static final int HTTP_STATUS_PERMANENT_REDIRECT = 308;
+    public static final int HTTP_STATUS_TOO_MANY_REQUESTS = 429;
+    public static final int HTTP_STATUS_INTERNAL_SERVER_ERROR = 500;
     public static final String HTTP_HEADER_USER_AGENT = "user-agent";
     public static final String HTTP_HEADER_LOCATION = "location";
     public static final String CONTENT_TYPE_HTML = "text/html";
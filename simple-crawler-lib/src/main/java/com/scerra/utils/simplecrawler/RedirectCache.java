@@ -0,0 +1,41 @@
+package com.scerra.utils.simplecrawler;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps a permanently redirecting URL to the chain of URLs it redirects through, the last one being the final target.
+ * Only chains made of permanent redirects are cached, since they stay valid across crawls. Least recently used
+ * chains are evicted once the cache holds maxEntries chains.
+ * Thread safe, so that it can be shared by concurrent crawlers.
+ */
+class RedirectCache {
+    private final Map<String, List<String>> entries;
+
+    RedirectCache(int maxEntries) {
+        this.entries = new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the redirect hops for the specified URL, or null if the URL is not known to redirect permanently.
+     * @param url
+     * @return
+     */
+    synchronized List<String> get(String url) {
+        return entries.get(url);
+    }
+
+    synchronized void put(String sourceUrl, List<String> hops) {
+        entries.put(sourceUrl, hops);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
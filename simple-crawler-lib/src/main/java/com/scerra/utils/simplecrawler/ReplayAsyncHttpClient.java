@@ -0,0 +1,385 @@
+package com.scerra.utils.simplecrawler;
+
+import org.asynchttpclient.AsyncCompletionHandler;
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.BoundRequestBuilder;
+import org.asynchttpclient.ClientStats;
+import org.asynchttpclient.DefaultAsyncHttpClientConfig;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.SignatureCalculator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An AsyncHttpClient serving GET requests from WARC files written by a {@link WarcRecorder}, without any network access.
+ * Records are located through the replay index and are only read and decompressed when the response is consumed,
+ * so this work happens on the crawler response handler threads.
+ * Custom handlers are supported as long as they are {@link AsyncCompletionHandler}s, which get the whole replayed response.
+ */
+public class ReplayAsyncHttpClient implements AsyncHttpClient {
+    private final Path directory;
+    /* Maps a URL to the location of its response record. */
+    private final Map<String, IndexEntry> index = new HashMap<>();
+    /* Open WARC files, indexed by file name. */
+    private final Map<String, FileChannel> files = new HashMap<>();
+    /* Default client config, only built if asked for. */
+    private AsyncHttpClientConfig config;
+    private volatile boolean closed;
+
+    /**
+     * Creates a replay client, loading the replay index found in the specified directory.
+     * @param directory
+     * @throws IOException
+     */
+    public ReplayAsyncHttpClient(String directory) throws IOException {
+        this.directory = Paths.get(directory);
+        List<String> lines = Files.readAllLines(this.directory.resolve(WarcRecorder.INDEX_FILE_NAME), StandardCharsets.UTF_8);
+        for (String line : lines) {
+            // Index line format: fileName offset length url
+            String[] fields = line.split(" ", 4);
+            if (fields.length != 4) {
+                continue;
+            }
+            index.put(fields[3], new IndexEntry(fields[0], Long.parseLong(fields[1]), Integer.parseInt(fields[2])));
+        }
+        try {
+            for (IndexEntry entry : index.values()) {
+                if (!files.containsKey(entry.fileName)) {
+                    files.put(entry.fileName, FileChannel.open(this.directory.resolve(entry.fileName), StandardOpenOption.READ));
+                }
+            }
+        } catch (IOException e) {
+            // Don't leak the files opened so far.
+            for (FileChannel file : files.values()) {
+                try {
+                    file.close();
+                } catch (IOException closeException) {
+                    e.addSuppressed(closeException);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of URLs available for replay.
+     * @return
+     */
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public BoundRequestBuilder prepareGet(String url) {
+        /* Replay is keyed on the exact URL requested by the crawler, not on its normalized form. */
+        return new BoundRequestBuilder(this, "GET", false) {
+            @Override
+            public ListenableFuture<Response> execute() {
+                return replay(url, null);
+            }
+
+            @Override
+            public <T> ListenableFuture<T> execute(AsyncHandler<T> handler) {
+                return replay(url, handler);
+            }
+        }.setUrl(url);
+    }
+
+    @Override
+    public ListenableFuture<Response> executeRequest(Request request) {
+        if (!"GET".equals(request.getMethod())) {
+            throw new UnsupportedOperationException("Only GET requests can be replayed.");
+        }
+        return replay(request.getUrl(), null);
+    }
+
+    @Override
+    public ListenableFuture<Response> executeRequest(RequestBuilder requestBuilder) {
+        return executeRequest(requestBuilder.build());
+    }
+
+    private <T> ListenableFuture<T> replay(String url, AsyncHandler<T> handler) {
+        if (handler != null && !(handler instanceof AsyncCompletionHandler)) {
+            throw new UnsupportedOperationException("Only completion handlers are supported in replay mode.");
+        }
+        if (closed) {
+            return new ListenableFuture.CompletedFailure<>(new IOException("Replay client has been closed."));
+        }
+        IndexEntry entry = index.get(url);
+        if (entry == null) {
+            return new ListenableFuture.CompletedFailure<>(new IOException(String.format("No recorded response for URL %s", url)));
+        }
+        return new ReplayFuture<>(url, entry, (AsyncCompletionHandler<T>) handler);
+    }
+
+    /**
+     * Reads, decompresses and parses the response record at the specified index entry.
+     */
+    private Response readResponse(String url, IndexEntry entry) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(entry.length);
+        FileChannel file = files.get(entry.fileName);
+        while (compressed.hasRemaining()) {
+            if (file.read(compressed, entry.offset + compressed.position()) < 0) {
+                throw new IOException(String.format("Truncated WARC record for URL %s", url));
+            }
+        }
+
+        byte[] record;
+        try (InputStream recordStream = new GZIPInputStream(new ByteArrayInputStream(compressed.array()))) {
+            record = recordStream.readAllBytes();
+        }
+
+        /* Skip the WARC header, reading the record block length. */
+        int headerEnd = -1;
+        for (int i = 0; i < record.length - 3; i++) {
+            if (record[i] == '\r' && record[i + 1] == '\n' && record[i + 2] == '\r' && record[i + 3] == '\n') {
+                headerEnd = i;
+                break;
+            }
+        }
+        if (headerEnd < 0) {
+            throw new IOException(String.format("Invalid WARC record for URL %s", url));
+        }
+        int blockLength = -1;
+        for (String headerLine : new String(record, 0, headerEnd, StandardCharsets.UTF_8).split("\r\n")) {
+            if (headerLine.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                blockLength = Integer.parseInt(headerLine.substring(15).trim());
+            }
+        }
+        int blockStart = headerEnd + 4;
+        if (blockLength < 0 || blockStart + blockLength > record.length) {
+            throw new IOException(String.format("Invalid WARC record length for URL %s", url));
+        }
+
+        return ReplayResponse.parse(url, record, blockStart, blockLength);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (FileChannel file : files.values()) {
+            file.close();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public AsyncHttpClient setSignatureCalculator(SignatureCalculator signatureCalculator) {
+        return this;
+    }
+
+    @Override
+    public BoundRequestBuilder prepareConnect(String url) {
+        return new BoundRequestBuilder(this, "CONNECT", false).setUrl(url);
+    }
+
+    @Override
+    public BoundRequestBuilder prepareOptions(String url) {
+        return new BoundRequestBuilder(this, "OPTIONS", false).setUrl(url);
+    }
+
+    @Override
+    public BoundRequestBuilder prepareHead(String url) {
+        return new BoundRequestBuilder(this, "HEAD", false).setUrl(url);
+    }
+
+    @Override
+    public BoundRequestBuilder preparePost(String url) {
+        return new BoundRequestBuilder(this, "POST", false).setUrl(url);
+    }
+
+    @Override
+    public BoundRequestBuilder preparePut(String url) {
+        return new BoundRequestBuilder(this, "PUT", false).setUrl(url);
+    }
+
+    @Override
+    public BoundRequestBuilder prepareDelete(String url) {
+        return new BoundRequestBuilder(this, "DELETE", false).setUrl(url);
+    }
+
+    @Override
+    public BoundRequestBuilder preparePatch(String url) {
+        return new BoundRequestBuilder(this, "PATCH", false).setUrl(url);
+    }
+
+    @Override
+    public BoundRequestBuilder prepareTrace(String url) {
+        return new BoundRequestBuilder(this, "TRACE", false).setUrl(url);
+    }
+
+    @Override
+    public BoundRequestBuilder prepareRequest(Request request) {
+        return new BoundRequestBuilder(this, request);
+    }
+
+    @Override
+    public BoundRequestBuilder prepareRequest(RequestBuilder requestBuilder) {
+        return prepareRequest(requestBuilder.build());
+    }
+
+    @Override
+    public <T> ListenableFuture<T> executeRequest(Request request, AsyncHandler<T> handler) {
+        if (!"GET".equals(request.getMethod())) {
+            throw new UnsupportedOperationException("Only GET requests can be replayed.");
+        }
+        return replay(request.getUrl(), handler);
+    }
+
+    @Override
+    public <T> ListenableFuture<T> executeRequest(RequestBuilder requestBuilder, AsyncHandler<T> handler) {
+        return executeRequest(requestBuilder.build(), handler);
+    }
+
+    @Override
+    public ClientStats getClientStats() {
+        // No connections in replay mode.
+        return new ClientStats(Collections.emptyMap());
+    }
+
+    @Override
+    public void flushChannelPoolPartitions(Predicate<Object> predicate) {
+        // No connection pool in replay mode.
+    }
+
+    @Override
+    public synchronized AsyncHttpClientConfig getConfig() {
+        if (config == null) {
+            config = new DefaultAsyncHttpClientConfig.Builder().build();
+        }
+        return config;
+    }
+
+    private static class IndexEntry {
+        private final String fileName;
+        private final long offset;
+        private final int length;
+
+        private IndexEntry(String fileName, long offset, int length) {
+            this.fileName = fileName;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A future that is ready as soon as it is created, lazily reading its response record on the first get() call.
+     * The response is passed to the completion handler, if any, whose result is the future value.
+     */
+    private class ReplayFuture<T> implements ListenableFuture<T> {
+        private final String url;
+        private final IndexEntry entry;
+        private final AsyncCompletionHandler<T> handler;
+        private T result;
+        private boolean completed;
+        private ExecutionException failure;
+
+        private ReplayFuture(String url, IndexEntry entry, AsyncCompletionHandler<T> handler) {
+            this.url = url;
+            this.entry = entry;
+            this.handler = handler;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized T get() throws ExecutionException {
+            if (!completed && failure == null) {
+                try {
+                    Response response = readResponse(url, entry);
+                    result = handler != null ? handler.onCompleted(response) : (T) response;
+                    completed = true;
+                } catch (Exception e) {
+                    if (handler != null) {
+                        handler.onThrowable(e);
+                    }
+                    failure = new ExecutionException(e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return result;
+        }
+
+        @Override
+        public T get(long timeout, TimeUnit unit) throws ExecutionException {
+            return get();
+        }
+
+        @Override
+        public ListenableFuture<T> addListener(Runnable listener, Executor executor) {
+            if (executor == null) {
+                listener.run();
+            } else {
+                executor.execute(listener);
+            }
+            return this;
+        }
+
+        @Override
+        public CompletableFuture<T> toCompletableFuture() {
+            CompletableFuture<T> completableFuture = new CompletableFuture<>();
+            try {
+                completableFuture.complete(get());
+            } catch (ExecutionException e) {
+                completableFuture.completeExceptionally(e.getCause());
+            }
+            return completableFuture;
+        }
+
+        @Override
+        public void done() {
+        }
+
+        @Override
+        public void abort(Throwable t) {
+        }
+
+        @Override
+        public void touch() {
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.scerra.utils.simplecrawler;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.cookie.Cookie;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.uri.Uri;
+import org.asynchttpclient.util.HttpUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An HTTP response read back from a WARC response record.
+ */
+public class ReplayResponse implements Response {
+    private final String url;
+    private final int statusCode;
+    private final String statusText;
+    private final HttpHeaders headers;
+    private final byte[] body;
+
+    public ReplayResponse(String url, int statusCode, String statusText, HttpHeaders headers, byte[] body) {
+        this.url = url;
+        this.statusCode = statusCode;
+        this.statusText = statusText;
+        this.headers = headers != null ? headers : new DefaultHttpHeaders();
+        this.body = body;
+    }
+
+    /**
+     * Parses the HTTP response message contained in a WARC response record block.
+     * @param url
+     * @param block
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static ReplayResponse parse(String url, byte[] block, int offset, int length) {
+        int end = offset + length;
+        int lineStart = offset;
+        int lineEnd = indexOfLineEnd(block, lineStart, end);
+
+        /* Status line, e.g. "HTTP/1.1 200 OK". */
+        String statusLine = new String(block, lineStart, lineEnd - lineStart, StandardCharsets.ISO_8859_1);
+        String[] statusParts = statusLine.split(" ", 3);
+        if (statusParts.length < 2) {
+            throw new IllegalArgumentException(String.format("Invalid HTTP status line for URL %s: %s", url, statusLine));
+        }
+        int statusCode = Integer.parseInt(statusParts[1]);
+        String statusText = statusParts.length == 3 ? statusParts[2] : "";
+
+        HttpHeaders headers = new DefaultHttpHeaders(false);
+        lineStart = lineEnd + 2;
+        while (lineStart < end) {
+            lineEnd = indexOfLineEnd(block, lineStart, end);
+            if (lineEnd == lineStart) {
+                lineStart += 2;
+                break;
+            }
+            String headerLine = new String(block, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+            int separator = headerLine.indexOf(':');
+            if (separator > 0) {
+                headers.add(headerLine.substring(0, separator).trim(), headerLine.substring(separator + 1).trim());
+            }
+            lineStart = lineEnd + 2;
+        }
+
+        byte[] body = new byte[Math.max(0, end - lineStart)];
+        System.arraycopy(block, Math.min(lineStart, end), body, 0, body.length);
+        return new ReplayResponse(url, statusCode, statusText, headers, body);
+    }
+
+    /* Returns the index of the next CRLF sequence, or the end of the block if none is found. */
+    private static int indexOfLineEnd(byte[] block, int from, int end) {
+        for (int i = from; i < end - 1; i++) {
+            if (block[i] == '\r' && block[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    @Override
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public String getStatusText() {
+        return statusText;
+    }
+
+    @Override
+    public byte[] getResponseBodyAsBytes() {
+        return body;
+    }
+
+    @Override
+    public ByteBuffer getResponseBodyAsByteBuffer() {
+        return ByteBuffer.wrap(body);
+    }
+
+    @Override
+    public InputStream getResponseBodyAsStream() {
+        return new ByteArrayInputStream(body);
+    }
+
+    @Override
+    public String getResponseBody(Charset charset) {
+        return new String(body, charset);
+    }
+
+    @Override
+    public String getResponseBody() {
+        Charset charset = getContentType() != null ? HttpUtils.extractCharset(getContentType()) : null;
+        return getResponseBody(charset != null ? charset : StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Uri getUri() {
+        return Uri.create(url);
+    }
+
+    @Override
+    public String getContentType() {
+        return headers.get("content-type");
+    }
+
+    @Override
+    public String getHeader(CharSequence name) {
+        return headers.get(name);
+    }
+
+    @Override
+    public List<String> getHeaders(CharSequence name) {
+        return headers.getAll(name);
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public boolean isRedirected() {
+        return statusCode >= 300 && statusCode < 400 && headers.contains(HttpConstants.HTTP_HEADER_LOCATION);
+    }
+
+    @Override
+    public List<Cookie> getCookies() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean hasResponseStatus() {
+        return true;
+    }
+
+    @Override
+    public boolean hasResponseHeaders() {
+        return !headers.isEmpty();
+    }
+
+    @Override
+    public boolean hasResponseBody() {
+        return body.length > 0;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return null;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ReplayResponse{url: %s, statusCode: %d, bodyLength: %d}", url, statusCode, body.length);
+    }
+}
@@ -0,0 +1,104 @@
+package com.scerra.utils.simplecrawler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rules deciding which URLs are in the scope of a crawl. They are compiled once per crawl into a {@link UrlScopeFilter}.
+ * Without any host rule, only URLs on the host of the root URL are in scope.
+ */
+public class ScopeRules {
+    private final List<String> allowedHosts = new ArrayList<>();
+    private final List<String> includedPathPrefixes = new ArrayList<>();
+    private final List<String> excludedPathPrefixes = new ArrayList<>();
+    private final List<String> excludedPatterns = new ArrayList<>();
+    private final List<String> excludedExtensions = new ArrayList<>();
+    private int maxQueryParameters = -1;
+
+    /**
+     * Allows URLs on the specified host. A "*." prefix allows any subdomain of the host, e.g. "*.example.com"
+     * matches "www.example.com" and "a.b.example.com" but not "example.com" itself. A single "*" allows any host.
+     * @param host
+     * @return
+     */
+    public ScopeRules allowHost(String host) {
+        allowedHosts.add(host);
+        return this;
+    }
+
+    /**
+     * Restricts the crawl to URLs whose path starts with one of the included prefixes.
+     * When a path matches both an included and an excluded prefix, the longest prefix wins.
+     * @param pathPrefix
+     * @return
+     */
+    public ScopeRules includePathPrefix(String pathPrefix) {
+        includedPathPrefixes.add(pathPrefix);
+        return this;
+    }
+
+    /**
+     * Excludes URLs whose path starts with the specified prefix.
+     * @param pathPrefix
+     * @return
+     */
+    public ScopeRules excludePathPrefix(String pathPrefix) {
+        excludedPathPrefixes.add(pathPrefix);
+        return this;
+    }
+
+    /**
+     * Excludes URLs matching the specified regular expression anywhere in the absolute URL.
+     * @param regex
+     * @return
+     */
+    public ScopeRules excludePattern(String regex) {
+        excludedPatterns.add(regex);
+        return this;
+    }
+
+    /**
+     * Excludes URLs whose path ends with one of the specified file extensions, compared case insensitively, e.g. "pdf".
+     * @param extensions
+     * @return
+     */
+    public ScopeRules excludeExtensions(String... extensions) {
+        Collections.addAll(excludedExtensions, extensions);
+        return this;
+    }
+
+    /**
+     * Excludes URLs with more than the specified number of query parameters. A negative value disables the limit.
+     * @param maxQueryParameters
+     * @return
+     */
+    public ScopeRules setMaxQueryParameters(int maxQueryParameters) {
+        this.maxQueryParameters = maxQueryParameters;
+        return this;
+    }
+
+    public List<String> getAllowedHosts() {
+        return allowedHosts;
+    }
+
+    public List<String> getIncludedPathPrefixes() {
+        return includedPathPrefixes;
+    }
+
+    public List<String> getExcludedPathPrefixes() {
+        return excludedPathPrefixes;
+    }
+
+    public List<String> getExcludedPatterns() {
+        return excludedPatterns;
+    }
+
+    public List<String> getExcludedExtensions() {
+        return excludedExtensions;
+    }
+
+    public int getMaxQueryParameters() {
+        return maxQueryParameters;
+    }
+}
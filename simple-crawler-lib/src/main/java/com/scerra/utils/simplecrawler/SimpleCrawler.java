@@ -1,10 +1,12 @@
 package com.scerra.utils.simplecrawler;
 
 import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.BoundRequestBuilder;
 import org.asynchttpclient.ListenableFuture;
 import org.asynchttpclient.Response;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.io.IOException;
@@ -15,7 +17,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 public class SimpleCrawler {
     /* Number of currently pending HTTP requests. */
@@ -26,22 +28,66 @@ public class SimpleCrawler {
     private Semaphore queueMightBeUpdated = new Semaphore(0);
     /* The main request queue. */
     private Queue<Page> queue = new LinkedList<>();
+    /* Pages deferred by an open circuit breaker, indexed by breaker key. These are only crawled when the main queue is empty. */
+    private Map<String, Queue<Page>> deferredPages = new LinkedHashMap<>();
+    /* Per host path prefix circuit breakers. */
+    private CircuitBreakerRegistry circuitBreakers;
+    /* Per URL pattern statistics, detecting crawl traps on the enqueue path. */
+    private CrawlTrapDetector crawlTraps;
     /* The page cache, indexed by URL. */
     private Map<String, Page> pages = new HashMap<>();
     /* Maps a URL to the list of page links pointing to it. */
     private Map<String, List<PageLink>> referringLinks = new HashMap<>();
     /* Maps a URL to a list of pages redirecting to it. */
     private Map<String, List<Page>> redirectingPages = new HashMap<>();
+    /* Maps a redirecting URL to its redirect chain, so that links to it can be resolved without fetching it again. */
+    private final RedirectCache redirectCache;
     /* The async HTTP client. */
     private AsyncHttpClient asyncHttpClient;
     /* Crawler configuration. */
     private CrawlerConfig config;
+    /* Records crawled responses to WARC files, if enabled in the config. */
+    private WarcRecorder warcRecorder;
+    /* Records the crawl events to a flight recording file, if profiling is enabled in the config. */
+    private CrawlProfiler crawlProfiler;
+    /* Thread pool running the HTTP response handlers, if shared with other crawlers. Otherwise, a pool is created for each crawl. */
+    private ExecutorService sharedExecutor;
+    /* Determines if the current crawl has been cancelled. */
+    private volatile boolean isCancelled;
     /* Determines if the crawler has been shut down. */
     private boolean isShutdown;
 
     protected SimpleCrawler(AsyncHttpClient asyncHttpClient, CrawlerConfig config) {
+        this(asyncHttpClient, config, null);
+    }
+
+    /**
+     * Creates a crawler using the specified HTTP client and response handler thread pool.
+     * When a shared thread pool is specified, both the client and the pool are owned by the caller
+     * and are not closed by this crawler.
+     * @param asyncHttpClient
+     * @param config
+     * @param sharedExecutor
+     */
+    protected SimpleCrawler(AsyncHttpClient asyncHttpClient, CrawlerConfig config, ExecutorService sharedExecutor) {
+        this(asyncHttpClient, config, sharedExecutor, new RedirectCache(config.getMaxCachedRedirects()));
+    }
+
+    /**
+     * Creates a crawler using the specified HTTP client, response handler thread pool and redirect cache,
+     * which may be shared with other crawlers.
+     * @param asyncHttpClient
+     * @param config
+     * @param sharedExecutor
+     * @param redirectCache
+     */
+    SimpleCrawler(AsyncHttpClient asyncHttpClient, CrawlerConfig config, ExecutorService sharedExecutor, RedirectCache redirectCache) {
         this.asyncHttpClient = asyncHttpClient;
         this.config = config;
+        this.sharedExecutor = sharedExecutor;
+        this.redirectCache = redirectCache;
+        this.circuitBreakers = new CircuitBreakerRegistry(config);
+        this.crawlTraps = new CrawlTrapDetector(config);
     }
 
     /**
@@ -60,66 +106,277 @@ public class SimpleCrawler {
         } catch (URISyntaxException e) {
             throw new IllegalArgumentException(String.format("Invalid URL: %s", rootUrl));
         }
+        final UrlScopeFilter scopeFilter = UrlScopeFilter.compile(config.getScopeRules(), rootUriObj);
 
         // This thread pool will be used by the asyncHttpClient to run our HTTP response handler.
-        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = sharedExecutor != null ? sharedExecutor :
+                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
 
         System.out.println(String.format("Crawler configuration: {maxConcurrentRequests: %d, requestTimeout: %dms, userAgent: %s}",
                 config.getMaxConcurrentRequests(), config.getRequestTimeout(), config.getUserAgent()));
 
+        if (config.getWarcRecordingDirectory() != null) {
+            try {
+                warcRecorder = new WarcRecorder(config.getWarcRecordingDirectory(), config.getWarcMaxFileSize());
+            } catch (IOException e) {
+                throw new IllegalArgumentException(String.format("Cannot record to WARC directory %s", config.getWarcRecordingDirectory()), e);
+            }
+        }
+        if (config.getFlightRecordingFile() != null) {
+            try {
+                crawlProfiler = new CrawlProfiler(config.getFlightRecordingFile());
+            } catch (IOException e) {
+                closeWarcRecorder();
+                throw new IllegalArgumentException(String.format("Cannot record to flight recording file %s", config.getFlightRecordingFile()), e);
+            }
+        }
+
+        circuitBreakers.clear();
+        crawlTraps.clear();
         queue.add(new Page(rootUrl));
         queueMightBeUpdated.release();
 
         try {
             while (true) {
                 /* Main controller loop */
-                mutex.acquire();
-                while(queue.isEmpty() || pendingRequests > config.getMaxConcurrentRequests()) {
-                    /* Controller sleep cycle. The controller will wait here when the request queue is empty but
-                    * there are still pending requests, or when the number of pending requests is greater than the limit. */
+                acquireMutex(null);
+                Page currentPage = canSendRequest() ? pollNextPage() : null;
+                while (currentPage == null) {
+                    /* Controller sleep cycle. The controller will wait here when no page can be crawled now but
+                    * there are still pending requests, or when the number of pending requests is greater than the limit.
+                    * When pages are waiting for a circuit breaker and a request slot is free, it wakes up in time to send
+                    * the next probe request. Otherwise, it waits for a pending request to complete. */
+                    long probeDelay = canSendRequest() ? circuitBreakers.millisUntilNextRequest(deferredPages.keySet()) : -1;
                     mutex.release();
-                    queueMightBeUpdated.acquire();
-                    mutex.acquire();
-                    if (queue.isEmpty() && pendingRequests == 0) {
-                        /* The controller found the request queue to be empty, with no pending requests. Crawling is done. */
-                        System.out.println("Crawling completed.");
+                    if (probeDelay < 0) {
+                        queueMightBeUpdated.acquire();
+                    } else {
+                        queueMightBeUpdated.tryAcquire(Math.max(probeDelay, 1), TimeUnit.MILLISECONDS);
+                    }
+                    acquireMutex(null);
+                    if ((isCancelled || queue.isEmpty() && deferredPages.isEmpty()) && pendingRequests == 0) {
+                        /* The controller found the request queue to be empty, or the crawl cancelled, with no pending requests. Crawling is done. */
+                        System.out.println(isCancelled ? "Crawling cancelled." : "Crawling completed.");
+                        isCancelled = false;
+                        queue.clear();
+                        deferredPages.clear();
                         mutex.release();
-                        executor.shutdown();
+                        if (executor != sharedExecutor) {
+                            executor.shutdown();
+                        }
+                        closeWarcRecorder();
+                        closeCrawlProfiler();
                         System.out.println(String.format("Crawled %d pages.", pages.size()));
+                        circuitBreakers.getStats(deferredPages).stream()
+                                .filter(stats -> stats.getTripCount() > 0)
+                                .forEach(stats -> System.out.println(String.format("Circuit breaker %s", stats)));
+                        crawlTraps.getStats().forEach(stats -> System.out.println(String.format("Crawl trap %s", stats)));
                         Page rootPage = pages.get(rootUrl);
                         pages.clear();
                         referringLinks.clear();
                         redirectingPages.clear();
                         return rootPage;
                     }
+                    currentPage = canSendRequest() ? pollNextPage() : null;
                 }
 
-                /* Fetch next element from the request queue, perform async HTTP request and register response handler. */
-                Page currentPage = queue.poll();
+                /* Perform async HTTP request for the next page and register response handler. */
                 pages.put(currentPage.getUrl(), null);
                 pendingRequests += 1;
-                ListenableFuture<Response> responseFuture = asyncHttpClient.prepareGet(currentPage.getUrl())
-                        .addHeader(HttpConstants.HTTP_HEADER_USER_AGENT, config.getUserAgent())
-                        .execute();
+                FetchTimingHandler fetchTiming = new FetchTimingHandler();
+                ListenableFuture<Response> responseFuture = sendRequest(currentPage.getUrl(), fetchTiming);
 
                 mutex.release();
-                responseFuture.addListener(handleResponse(rootUriObj, currentPage, responseFuture), executor);
+                responseFuture.addListener(handleResponse(scopeFilter, currentPage, responseFuture, fetchTiming,
+                        Collections.emptyList(), true, executor), executor);
             }
         } catch (InterruptedException e) {
             e.printStackTrace();
+            closeWarcRecorder();
+            closeCrawlProfiler();
             return null;
         }
     }
 
+    /**
+     * Cancels the current crawl: no more requests are sent, and the crawl returns as soon as the pending ones complete,
+     * with the partial page graph. If no crawl is running, the next one is cancelled.
+     */
+    public void cancel() {
+        isCancelled = true;
+        // Wake up the controller, in case it is waiting.
+        queueMightBeUpdated.release();
+    }
+
+    /**
+     * Returns the number of pages crawled or being crawled so far by the current crawl.
+     * @return
+     */
+    public int getCrawledPageCount() {
+        mutex.acquireUninterruptibly();
+        try {
+            return pages.size();
+        } finally {
+            mutex.release();
+        }
+    }
+
+    /**
+     * Returns the number of pages waiting to be crawled by the current crawl.
+     * @return
+     */
+    public int getQueuedPageCount() {
+        mutex.acquireUninterruptibly();
+        try {
+            return queue.size() + deferredPages.values().stream().mapToInt(Queue::size).sum();
+        } finally {
+            mutex.release();
+        }
+    }
+
+    private boolean canSendRequest() {
+        return !isCancelled && pendingRequests <= config.getMaxConcurrentRequests();
+    }
+
+    /**
+     * Returns the next page to crawl, or null if there is none that can be crawled now.
+     * Pages whose circuit breaker does not allow requests are moved to the deferred pages,
+     * which are only crawled once the main queue is empty and their breaker lets a request through.
+     * Pages whose breaker gave up are dropped.
+     * Must be called while holding the mutex.
+     * @return
+     */
+    private Page pollNextPage() {
+        CrawlEvents.Dequeue dequeueEvent = new CrawlEvents.Dequeue();
+        dequeueEvent.begin();
+        Page page = pollNextCrawlablePage();
+        dequeueEvent.end();
+        if (dequeueEvent.shouldCommit()) {
+            dequeueEvent.queueSize = queue.size();
+            dequeueEvent.commit(page != null ? page.getUrl() : null, 0, 0);
+        }
+        return page;
+    }
+
+    private Page pollNextCrawlablePage() {
+        if (!config.isCircuitBreakerEnabled()) {
+            return queue.poll();
+        }
+
+        while (!queue.isEmpty()) {
+            Page page = queue.poll();
+            String key = circuitBreakers.keyOf(page.getUrl());
+            if (circuitBreakers.allowRequest(key, page.getUrl())) {
+                return page;
+            }
+            if (circuitBreakers.isGivenUp(key)) {
+                dropPage(key, page);
+                continue;
+            }
+            // Mark the page as being crawled, so that it is not enqueued again while deferred.
+            pages.put(page.getUrl(), null);
+            circuitBreakers.recordDeferral(key);
+            deferredPages.computeIfAbsent(key, __ -> new LinkedList<>()).add(page);
+        }
+
+        Iterator<Map.Entry<String, Queue<Page>>> deferredIterator = deferredPages.entrySet().iterator();
+        while (deferredIterator.hasNext()) {
+            Map.Entry<String, Queue<Page>> deferred = deferredIterator.next();
+            if (circuitBreakers.isGivenUp(deferred.getKey())) {
+                deferred.getValue().forEach(page -> dropPage(deferred.getKey(), page));
+                deferredIterator.remove();
+            } else if (circuitBreakers.allowRequest(deferred.getKey(), deferred.getValue().peek().getUrl())) {
+                Page page = deferred.getValue().poll();
+                if (deferred.getValue().isEmpty()) {
+                    deferredIterator.remove();
+                }
+                return page;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves the pages deferred by the specified breaker back to the main queue once it closed,
+     * so that they are crawled concurrently again rather than one probe at a time.
+     * Must be called while holding the mutex.
+     * @param key
+     */
+    private void releaseDeferredPages(String key) {
+        if (circuitBreakers.getState(key) == CircuitBreaker.State.CLOSED) {
+            Queue<Page> deferred = deferredPages.remove(key);
+            if (deferred != null) {
+                queue.addAll(deferred);
+            }
+        }
+    }
+
+    /**
+     * Drops a page of a breaker that gave up: the page is stored without links, as if its request failed,
+     * and the links and redirects pointing to it are reconciled.
+     * Must be called while holding the mutex.
+     * @param key
+     * @param page
+     */
+    private void dropPage(String key, Page page) {
+        circuitBreakers.recordDrop(key);
+        page.setLinks(new ArrayList<>());
+        pages.put(page.getUrl(), page);
+        List<PageLink> pageReferringLinks = referringLinks.get(page.getUrl());
+        if (pageReferringLinks != null) {
+            pageReferringLinks.forEach(pageLink -> pageLink.setPage(page));
+        }
+        List<Page> pagesRedirectingToPage = redirectingPages.get(page.getUrl());
+        if (pagesRedirectingToPage != null) {
+            pagesRedirectingToPage.forEach(redirectingPage -> redirectingPage.setRedirectsTo(page));
+        }
+    }
+
+    /**
+     * Returns a snapshot of the URL patterns detected as crawl traps by the current, or last, crawl.
+     * @return
+     */
+    public List<CrawlTrapStats> getCrawlTrapStats() {
+        mutex.acquireUninterruptibly();
+        try {
+            return crawlTraps.getStats();
+        } finally {
+            mutex.release();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the circuit breakers of the current, or last, crawl.
+     * @return
+     */
+    public List<CircuitBreakerStats> getCircuitBreakerStats() {
+        mutex.acquireUninterruptibly();
+        try {
+            return circuitBreakers.getStats(deferredPages);
+        } finally {
+            mutex.release();
+        }
+    }
+
     /**
      * Returns an asynchronous handler for processing HTTP responses. It will be invoked in a separate thread by the asyncHttpClient.
-     * @param rootUriObj
+     * Redirects are followed inline by the handler, reusing the request slot of the redirecting page, up to the configured limit.
+     * @param scopeFilter
      * @param currentPage
      * @param responseFuture
+     * @param fetchTiming
+     * @param redirectChain pages that redirected inline to the current page, in order
+     * @param permanentChain whether all redirects in the chain were permanent
+     * @param executor
      * @return
      */
-    private Runnable handleResponse(URI rootUriObj, Page currentPage, ListenableFuture<Response> responseFuture) {
+    private Runnable handleResponse(UrlScopeFilter scopeFilter, Page currentPage, ListenableFuture<Response> responseFuture, FetchTimingHandler fetchTiming,
+                                    List<Page> redirectChain, boolean permanentChain, ExecutorService executor) {
         return () -> {
+            Page nextHop = null;
+            List<Page> chain = new ArrayList<>(redirectChain);
+            chain.add(currentPage);
+            boolean permanent = permanentChain;
             try {
                 Response response = null;
                 try {
@@ -127,58 +384,127 @@ public class SimpleCrawler {
                 } catch (ExecutionException e) {
                     System.err.println(String.format("Could not get response from URL %s", currentPage.getUrl()));
                 }
+                // No-op unless the response future completed without running its listeners.
+                fetchTiming.markCompleted();
+
+                if (response != null && warcRecorder != null) {
+                    warcRecorder.record(currentPage.getUrl(), config.getUserAgent(), response);
+                }
 
                 /* Tries to parse the HTML document in the response, avoiding to do so if the content type is not HTML or there is a redirect. */
                 Document document = null;
-                if (response != null && response.getStatusCode() != HttpConstants.HTTP_STATUS_MOVED_PERMANENTLY &&
-                        response.getStatusCode() != HttpConstants.HTTP_STATUS_MOVED_TEMPORARILY &&
+                CrawlEvents.Parse parseEvent = new CrawlEvents.Parse();
+                if (response != null && !isRedirect(response) &&
                         response.getContentType() != null && response.getContentType().contains(HttpConstants.CONTENT_TYPE_HTML)) {
+                    parseEvent.begin();
                     try {
                         document = Jsoup.parse(response.getResponseBody());
                     } catch (IllegalArgumentException e) {
                         System.err.println(String.format("Could not parse HTML response from URL %s", response.getUri().toString()));
                     }
+                    parseEvent.end();
                 }
 
                 /* Get the page outbound links. */
                 List<PageLink> links = new ArrayList<>();
+                CrawlEvents.LinkExtraction linkExtractionEvent = new CrawlEvents.LinkExtraction();
                 if (document != null) {
-                    links = scrapePageLinks(document, rootUriObj);
+                    linkExtractionEvent.begin();
+                    links = scrapePageLinks(document, scopeFilter);
+                    linkExtractionEvent.end();
                 }
                 currentPage.setLinks(links);
 
-                mutex.acquire();
+                /* Emit the crawl events, only computing their fields when they are recorded. */
+                if (fetchTiming.shouldCommit() ||
+                        document != null && (parseEvent.shouldCommit() || linkExtractionEvent.shouldCommit())) {
+                    long bytes = response != null ? response.getResponseBodyAsBytes().length : 0;
+                    fetchTiming.commit(currentPage.getUrl(), response != null ? response.getStatusCode() : 0, bytes, links.size());
+                    if (document != null) {
+                        parseEvent.commit(currentPage.getUrl(), bytes, links.size());
+                        linkExtractionEvent.commit(currentPage.getUrl(), bytes, links.size());
+                    }
+                }
+
+                acquireMutex(currentPage.getUrl());
+
+                if (config.isCircuitBreakerEnabled()) {
+                    boolean failed = response == null || response.getStatusCode() == HttpConstants.HTTP_STATUS_TOO_MANY_REQUESTS ||
+                            response.getStatusCode() >= HttpConstants.HTTP_STATUS_INTERNAL_SERVER_ERROR;
+                    String key = circuitBreakers.keyOf(currentPage.getUrl());
+                    circuitBreakers.recordOutcome(key, currentPage.getUrl(), fetchTiming.getLatencyMillis(), failed);
+                    releaseDeferredPages(key);
+                }
 
                 /* Handling of redirects */
-                if (response != null && (response.getStatusCode() == HttpConstants.HTTP_STATUS_MOVED_PERMANENTLY ||
-                        response.getStatusCode() == HttpConstants.HTTP_STATUS_MOVED_TEMPORARILY)) {
+                if (response != null && isRedirect(response)) {
                     String locationHeader = response.getHeader(HttpConstants.HTTP_HEADER_LOCATION);
-                    String redirectUrl = combineUrlSegments(rootUriObj, locationHeader);
+                    permanent = permanent && isPermanentRedirect(response.getStatusCode());
 
-                    if (!pages.containsKey(redirectUrl) && !queue.stream().anyMatch(page -> page.getUrl().equals(redirectUrl))) {
-                        // Neither the page cache or the queue contains the redirected page, so enqueue it for crawling.
-                        queue.add(new Page(redirectUrl));
+                    String redirectUrl = scopeFilter.resolve(locationHeader);
+                    if (redirectUrl == null) {
+                        System.err.println(String.format("Ignored redirect outside crawl scope from URL %s to %s", currentPage.getUrl(), locationHeader));
                     } else {
-                        Page redirectPage = pages.get(redirectUrl);
-                        if (redirectPage != null) {
-                            currentPage.setRedirectsTo(redirectPage);
+                        Page loopPage = chain.stream().filter(page -> page.getUrl().equals(redirectUrl)).findFirst().orElse(null);
+
+                        if (loopPage != null) {
+                            System.err.println(String.format("Redirect loop detected from URL %s to %s", currentPage.getUrl(), redirectUrl));
+                            currentPage.setRedirectsTo(loopPage);
+                            cacheRedirectChain(chain, redirectUrl, permanent);
+                        } else if (pages.containsKey(redirectUrl)) {
+                            // The redirected page has already been crawled or is being crawled.
+                            Page redirectPage = pages.get(redirectUrl);
+                            if (redirectPage != null) {
+                                currentPage.setRedirectsTo(redirectPage);
+                            } else {
+                                addRedirectingPage(redirectUrl, currentPage);
+                            }
+                            cacheRedirectChain(chain, redirectUrl, permanent);
+                        } else if (chain.size() > config.getMaxRedirects()) {
+                            System.err.println(String.format("Too many redirects from URL %s, not following redirect to %s", chain.get(0).getUrl(), redirectUrl));
+                        } else if (config.isCrawlTrapDetectionEnabled() &&
+                                !crawlTraps.allowEnqueue(redirectUrl, crawlTraps.patternOf(currentPage.getUrl()))) {
+                            // The redirect target belongs to a crawl trap, don't follow it.
+                            currentPage.setRedirectsTo(newRejectedPage(redirectUrl));
+                            addRedirectingPage(redirectUrl, currentPage);
+                        } else if (!isCancelled) {
+                            queue.removeIf(page -> page.getUrl().equals(redirectUrl));
+                            if (!config.isCircuitBreakerEnabled() || circuitBreakers.allowRequest(circuitBreakers.keyOf(redirectUrl), redirectUrl)) {
+                                // Follow the redirect right away, instead of sending it back through the request queue.
+                                nextHop = new Page(redirectUrl);
+                                pages.put(redirectUrl, null);
+                            } else {
+                                // The breaker of the target does not allow requests now, let the controller defer it.
+                                queue.add(new Page(redirectUrl));
+                            }
+                            addRedirectingPage(redirectUrl, currentPage);
                         }
                     }
-
-                    /* Add the redirecting page to the list of pages pointing to redirected URL. */
-                    redirectingPages.merge(redirectUrl, new ArrayList<>(Arrays.asList(currentPage)),
-                            (redirectPagesList, __) -> {
-                                redirectPagesList.add(currentPage);
-                                return redirectPagesList;
-                            });
+                } else if (!redirectChain.isEmpty()) {
+                    // Current page is the final target of an inline redirect chain.
+                    cacheRedirectChain(redirectChain, currentPage.getUrl(), permanent);
                 }
 
                 pages.put(currentPage.getUrl(), currentPage);
 
+                CrawlEvents.Enqueue enqueueEvent = new CrawlEvents.Enqueue();
+                enqueueEvent.begin();
+                long pattern = config.isCrawlTrapDetectionEnabled() ? crawlTraps.patternOf(currentPage.getUrl()) : 0;
                 for (PageLink link : currentPage.getLinks()) {
                     if (!pages.containsKey(link.getUrl()) && !queue.stream().anyMatch(page -> page.getUrl().equals(link.getUrl()))) {
-                        // Neither the page cache or the queue contains the linked page, so enqueue it for crawling.
-                        queue.add(new Page(link.getUrl()));
+                        // The linked page may be known to redirect permanently, from this or a previous crawl,
+                        // in which case it is resolved straight to its target.
+                        List<String> redirectHops = redirectCache.get(link.getUrl());
+                        Page redirectPage = redirectHops != null ? resolveRedirectChain(scopeFilter, link.getUrl(), redirectHops, pattern) : null;
+                        if (redirectPage != null) {
+                            link.setPage(redirectPage);
+                        } else if (!config.isCrawlTrapDetectionEnabled() || crawlTraps.allowEnqueue(link.getUrl(), pattern)) {
+                            // Neither the page cache or the queue contains the linked page, so enqueue it for crawling,
+                            // unless it belongs to a crawl trap.
+                            queue.add(new Page(link.getUrl()));
+                        } else {
+                            link.setPage(newRejectedPage(link.getUrl()));
+                        }
                     } else {
                         Page linkedPage = pages.get(link.getUrl());
                         if (linkedPage != null) {
@@ -193,6 +519,14 @@ public class SimpleCrawler {
                                 return referringLinksList;
                             });
                 }
+                if (config.isCrawlTrapDetectionEnabled()) {
+                    crawlTraps.recordFetch(pattern);
+                }
+                enqueueEvent.end();
+                if (enqueueEvent.shouldCommit()) {
+                    enqueueEvent.queueSize = queue.size();
+                    enqueueEvent.commit(currentPage.getUrl(), 0, currentPage.getLinks().size());
+                }
 
                 /* Reconcile any links that are pointing to current page. */
                 List<PageLink> pageReferringLinks = referringLinks.get(currentPage.getUrl());
@@ -210,7 +544,9 @@ public class SimpleCrawler {
                     });
                 }
 
-                pendingRequests -= 1;
+                if (nextHop == null) {
+                    pendingRequests -= 1;
+                }
                 // Worker has terminated, send a signal to the controller so that it can wake up if asleep.
                 queueMightBeUpdated.release();
             } catch (Exception e) {
@@ -218,87 +554,238 @@ public class SimpleCrawler {
             } finally {
                 mutex.release();
             }
+
+            if (nextHop != null) {
+                /* Perform the redirect request, keeping the request slot of the current page. */
+                FetchTimingHandler redirectTiming = new FetchTimingHandler();
+                ListenableFuture<Response> redirectFuture = sendRequest(nextHop.getUrl(), redirectTiming);
+                redirectFuture.addListener(handleResponse(scopeFilter, nextHop, redirectFuture, redirectTiming, chain, permanent, executor), executor);
+            }
         };
     }
 
     /**
-     * Scrapes any links contained in the specified document,
-     * filtering out the ones that do not match the root domain URL.
-     * @param document
-     * @param rootUri
+     * Returns true if the response is a redirect that can be followed, that is, any 3xx response
+     * other than 304 Not Modified, carrying a location header.
+     * @param response
      * @return
      */
-    private List<PageLink> scrapePageLinks(Document document, URI rootUri) {
-        Elements anchors = document.select("a");
+    private boolean isRedirect(Response response) {
+        int statusCode = response.getStatusCode();
+        return statusCode >= 300 && statusCode < 400 && statusCode != HttpConstants.HTTP_STATUS_NOT_MODIFIED &&
+                response.getHeader(HttpConstants.HTTP_HEADER_LOCATION) != null;
+    }
+
+    private boolean isPermanentRedirect(int statusCode) {
+        return statusCode == HttpConstants.HTTP_STATUS_MOVED_PERMANENTLY || statusCode == HttpConstants.HTTP_STATUS_PERMANENT_REDIRECT;
+    }
+
+    /**
+     * Adds a page to the list of pages redirecting to the specified URL, so that it can be reconciled once the URL is crawled.
+     * Must be called while holding the mutex.
+     * @param redirectUrl
+     * @param page
+     */
+    private void addRedirectingPage(String redirectUrl, Page page) {
+        redirectingPages.merge(redirectUrl, new ArrayList<>(Arrays.asList(page)),
+                (redirectPagesList, __) -> {
+                    redirectPagesList.add(page);
+                    return redirectPagesList;
+                });
+    }
 
-        return anchors.stream()
-                .filter(anchor -> {
-                    String url = anchor.attributes().get("href");
-                    return urlShouldBeCrawled(url, rootUri.getHost());
-                })
-                .map(anchor -> {
-                    String href = anchor.attributes().get("href");
-                    String url = combineUrlSegments(rootUri, href);
-
-                    String text = anchor.text();
-                    return new PageLink(url, text);
-                }).collect(Collectors.toList());
+    /**
+     * Stores in the redirect cache the hops from each page in the chain to the specified target URL,
+     * if all redirects in the chain were permanent.
+     * Must be called while holding the mutex.
+     * @param chain
+     * @param targetUrl
+     * @param permanent
+     */
+    private void cacheRedirectChain(List<Page> chain, String targetUrl, boolean permanent) {
+        if (!permanent) {
+            return;
+        }
+        for (int i = 0; i < chain.size(); i++) {
+            List<String> hops = new ArrayList<>(chain.size() - i);
+            for (int j = i + 1; j < chain.size(); j++) {
+                hops.add(chain.get(j).getUrl());
+            }
+            hops.add(targetUrl);
+            redirectCache.put(chain.get(i).getUrl(), hops);
+        }
+    }
+
+    /**
+     * Returns a page, with no links, standing for a linked page that is not crawled because it belongs to a crawl trap.
+     * It is not added to the page cache, so it is replaced by the actual page if the URL gets crawled anyway.
+     * @param url
+     * @return
+     */
+    private static Page newRejectedPage(String url) {
+        Page page = new Page(url);
+        page.setLinks(new ArrayList<>());
+        return page;
     }
 
     /**
-     * Combines a root URL with a path (handling edge cases) and returns it.
-     * @param rootUri
-     * @param path
+     * Builds the pages of a cached redirect chain starting at the specified URL, without fetching them,
+     * and enqueues its final target if it is not known yet, unless it belongs to a crawl trap.
+     * Returns the page for the specified URL, or null if any hop of the chain is outside the crawl scope,
+     * the chain possibly coming from a crawl with a different scope.
+     * Must be called while holding the mutex.
+     * @param scopeFilter
+     * @param url
+     * @param hops
+     * @param sourcePattern crawl trap pattern of the page linking to the URL
      * @return
      */
-    private String combineUrlSegments(URI rootUri, String path) {
-        String url;
-        if (!path.startsWith(rootUri.toString())) {
-            // This URL is missing the host prefix, let's add it.
-            url = rootUri.toString();
-            if (!rootUri.getPath().endsWith("/") && !path.startsWith("/")) {
-                url = url + "/";
+    private Page resolveRedirectChain(UrlScopeFilter scopeFilter, String url, List<String> hops, long sourcePattern) {
+        for (String hopUrl : hops) {
+            if (scopeFilter.resolve(hopUrl) == null) {
+                return null;
+            }
+        }
+
+        Page firstPage = new Page(url);
+        firstPage.setLinks(new ArrayList<>());
+        pages.put(url, firstPage);
+
+        Page previousPage = firstPage;
+        for (int i = 0; i < hops.size(); i++) {
+            String hopUrl = hops.get(i);
+            boolean isQueued = queue.stream().anyMatch(page -> page.getUrl().equals(hopUrl));
+            if (pages.containsKey(hopUrl) || isQueued) {
+                Page hopPage = pages.get(hopUrl);
+                if (hopPage != null) {
+                    previousPage.setRedirectsTo(hopPage);
+                } else {
+                    addRedirectingPage(hopUrl, previousPage);
+                }
+                break;
             }
-            if (rootUri.getPath().endsWith("/") && path.startsWith("/")) {
-                url = url.substring(0, url.length() - 1) + path;
+
+            if (i == hops.size() - 1) {
+                // Final target of the chain, crawl it.
+                if (!config.isCrawlTrapDetectionEnabled() || crawlTraps.allowEnqueue(hopUrl, sourcePattern)) {
+                    queue.add(new Page(hopUrl));
+                } else {
+                    previousPage.setRedirectsTo(newRejectedPage(hopUrl));
+                }
+                addRedirectingPage(hopUrl, previousPage);
             } else {
-                url = url + path;
+                Page hopPage = new Page(hopUrl);
+                hopPage.setLinks(new ArrayList<>());
+                pages.put(hopUrl, hopPage);
+                previousPage.setRedirectsTo(hopPage);
+                previousPage = hopPage;
+            }
+        }
+        return firstPage;
+    }
+
+    /**
+     * Scrapes any links contained in the specified document,
+     * filtering out the ones that are outside the crawl scope.
+     * @param document
+     * @param scopeFilter
+     * @return
+     */
+    private List<PageLink> scrapePageLinks(Document document, UrlScopeFilter scopeFilter) {
+        Elements anchors = document.select("a");
+
+        List<PageLink> links = new ArrayList<>();
+        for (Element anchor : anchors) {
+            String url = scopeFilter.resolve(anchor.attributes().get("href"));
+            if (url != null) {
+                links.add(new PageLink(url, anchor.text()));
             }
-        } else {
-            url = path;
         }
-        return url;
+        return links;
     }
 
     /**
-     * Checks if a URL should be crawled by seeing if it matches a root domain.
-     * Returns false if the URL has no host part, is outside the specified root domain or is invalid.
+     * Sends a GET request for the specified URL, with the request timeout of this crawler, which may differ from
+     * the one of a shared client. The timing handler only hooks into the request phases when the crawl is profiled,
+     * since the client default handler is cheaper.
+     * If the request cannot be sent, a failed future is returned, so that the response handler still runs
+     * and releases the request slot.
      * @param url
-     * @param rootDomain
+     * @param fetchTiming
      * @return
      */
-    private boolean urlShouldBeCrawled(String url, String rootDomain) {
+    private ListenableFuture<Response> sendRequest(String url, FetchTimingHandler fetchTiming) {
+        ListenableFuture<Response> responseFuture;
+        fetchTiming.begin();
         try {
-            URI uri = new URI(url);
-            if (uri.getHost() == null || uri.getHost().isEmpty() || uri.getHost().equals(rootDomain)) {
-                return true;
+            BoundRequestBuilder request = asyncHttpClient.prepareGet(url)
+                    .addHeader(HttpConstants.HTTP_HEADER_USER_AGENT, config.getUserAgent())
+                    .setRequestTimeout(config.getRequestTimeout());
+            responseFuture = crawlProfiler != null ? request.execute(fetchTiming) : request.execute();
+        } catch (RuntimeException e) {
+            return new ListenableFuture.CompletedFailure<>(e);
+        }
+        // Time the response completion on the completing thread, so that the latency seen by the circuit breakers
+        // does not include waiting for a response handler thread.
+        responseFuture.addListener(fetchTiming::markCompleted, Runnable::run);
+        return responseFuture;
+    }
+
+    /**
+     * Acquires the mutex, emitting a lock event with the time spent waiting for it when the crawl is profiled.
+     * @param url the page being processed, if any
+     * @throws InterruptedException
+     */
+    private void acquireMutex(String url) throws InterruptedException {
+        if (crawlProfiler == null) {
+            mutex.acquire();
+            return;
+        }
+        CrawlEvents.Lock lockEvent = new CrawlEvents.Lock();
+        lockEvent.begin();
+        mutex.acquire();
+        lockEvent.end();
+        lockEvent.commit(url, 0, 0);
+    }
+
+    /**
+     * Waits for any pending WARC records to be written and closes the recorder, if recording is enabled.
+     */
+    private void closeWarcRecorder() {
+        if (warcRecorder != null) {
+            try {
+                warcRecorder.close();
+            } catch (IOException e) {
+                System.err.println(String.format("Could not close WARC recorder: %s", e.getMessage()));
             }
-            return false;
-        } catch (URISyntaxException e) {
-            // Let's ignore invalid URLs.
-            System.err.println(String.format("Ignored invalid link with URL %s", url));
-            return false;
+            warcRecorder = null;
+        }
+    }
+
+    /**
+     * Stops the flight recording and writes it to its file, if profiling is enabled.
+     */
+    private void closeCrawlProfiler() {
+        if (crawlProfiler != null) {
+            try {
+                crawlProfiler.close();
+            } catch (IOException e) {
+                System.err.println(String.format("Could not write flight recording: %s", e.getMessage()));
+            }
+            crawlProfiler = null;
         }
     }
 
     /**
-     *  Shuts down crawler, closing internal HTTP client.
+     *  Shuts down crawler, closing internal HTTP client unless it is shared with other crawlers.
      *  Crawler instance cannot be reused after this.
      * @throws IOException
      */
     public void shutdown() throws IOException {
         if (!isShutdown) {
-            asyncHttpClient.close();
+            if (sharedExecutor == null) {
+                asyncHttpClient.close();
+            }
             isShutdown = true;
         }
     }
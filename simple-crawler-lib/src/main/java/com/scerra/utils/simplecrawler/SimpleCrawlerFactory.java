@@ -2,6 +2,8 @@ package com.scerra.utils.simplecrawler;
 
 import org.asynchttpclient.AsyncHttpClient;
 
+import java.io.IOException;
+
 import static org.asynchttpclient.Dsl.asyncHttpClient;
 import static org.asynchttpclient.Dsl.config;
 
@@ -24,4 +26,18 @@ public class SimpleCrawlerFactory {
         SimpleCrawler crawler = new SimpleCrawler(asyncHttpClient, config);
         return crawler;
     }
+
+    /**
+     * Creates a SimpleCrawler with the specified config, serving every request from the WARC files
+     * recorded in the specified directory instead of the network.
+     * @param config
+     * @param warcDirectory
+     * @return
+     * @throws IOException
+     */
+    public static SimpleCrawler createReplayCrawler(CrawlerConfig config, String warcDirectory) throws IOException {
+        AsyncHttpClient asyncHttpClient = new ReplayAsyncHttpClient(warcDirectory);
+        SimpleCrawler crawler = new SimpleCrawler(asyncHttpClient, config);
+        return crawler;
+    }
 }
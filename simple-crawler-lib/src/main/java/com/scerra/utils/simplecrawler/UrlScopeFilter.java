@@ -0,0 +1,319 @@
+package com.scerra.utils.simplecrawler;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * The {@link ScopeRules} of a crawl compiled against its root URL.
+ * Links are checked in a single scan of the href chars, which locates the host, path and query spans and walks the
+ * host, path prefix and extension tries over them, so most out of scope links are rejected without allocating
+ * any string or URI. The excluded patterns are joined into a single regular expression, only evaluated on the links
+ * passing the other rules.
+ * Immutable and thread safe.
+ */
+class UrlScopeFilter {
+    /* Host trie flags, the keys being the reversed host names. */
+    private static final int HOST_EXACT = 1;
+    private static final int HOST_SUBDOMAINS = 2;
+    /* Path trie flags. An excluded prefix wins over an included prefix of the same length. */
+    private static final int PATH_INCLUDED = 1;
+    private static final int PATH_EXCLUDED = 2;
+
+    private final URI rootUri;
+    private final String rootUrl;
+    private final String rootScheme;
+    /* Root path without its trailing slash, which relative links are appended to. */
+    private final String basePath;
+    private final boolean anyHost;
+    private final boolean rootHostAllowed;
+    private final CharTrie hosts = new CharTrie();
+    private final CharTrie paths = new CharTrie();
+    private final boolean hasIncludedPaths;
+    /* Keys are the reversed lower case extensions. */
+    private final CharTrie extensions = new CharTrie();
+    private final int maxQueryParameters;
+    private final Pattern excludedPattern;
+
+    private UrlScopeFilter(ScopeRules rules, URI rootUri) {
+        this.rootUri = rootUri;
+        this.rootUrl = rootUri.toString();
+        this.rootScheme = rootUri.getScheme() != null ? rootUri.getScheme() : "http";
+        String rootPath = rootUri.getRawPath() != null ? rootUri.getRawPath() : "";
+        this.basePath = rootPath.endsWith("/") ? rootPath.substring(0, rootPath.length() - 1) : rootPath;
+
+        List<String> allowedHosts = rules.getAllowedHosts();
+        if (allowedHosts.isEmpty() && rootUri.getHost() != null) {
+            hosts.insert(rootUri.getHost().toLowerCase(Locale.ROOT), true, HOST_EXACT);
+        }
+        boolean anyHost = false;
+        for (String host : allowedHosts) {
+            String pattern = host.trim().toLowerCase(Locale.ROOT);
+            if (pattern.equals("*")) {
+                anyHost = true;
+            } else if (pattern.startsWith("*.")) {
+                hosts.insert(pattern.substring(2), true, HOST_SUBDOMAINS);
+            } else {
+                hosts.insert(pattern, true, HOST_EXACT);
+            }
+        }
+        this.anyHost = anyHost;
+        String rootHost = rootUri.getHost() != null ? rootUri.getHost() : "";
+        this.rootHostAllowed = anyHost || matchesHost(rootHost, 0, rootHost.length());
+
+        for (String prefix : rules.getIncludedPathPrefixes()) {
+            paths.insert(prefix, false, PATH_INCLUDED);
+        }
+        for (String prefix : rules.getExcludedPathPrefixes()) {
+            paths.insert(prefix, false, PATH_EXCLUDED);
+        }
+        this.hasIncludedPaths = !rules.getIncludedPathPrefixes().isEmpty();
+
+        for (String extension : rules.getExcludedExtensions()) {
+            String key = extension.startsWith(".") ? extension.substring(1) : extension;
+            extensions.insert(key.toLowerCase(Locale.ROOT), true, 1);
+        }
+        this.maxQueryParameters = rules.getMaxQueryParameters();
+
+        List<String> patterns = rules.getExcludedPatterns();
+        this.excludedPattern = patterns.isEmpty() ? null :
+                Pattern.compile(patterns.stream().map(regex -> "(?:" + regex + ")").collect(Collectors.joining("|")));
+    }
+
+    /**
+     * Compiles the specified rules for a crawl starting at the specified root URL.
+     * @param rules
+     * @param rootUri
+     * @return
+     * @throws IllegalArgumentException if an excluded pattern is not a valid regular expression
+     */
+    static UrlScopeFilter compile(ScopeRules rules, URI rootUri) {
+        return new UrlScopeFilter(rules, rootUri);
+    }
+
+    /**
+     * Returns the absolute URL of the specified link if it is in the crawl scope, or null otherwise.
+     * Links without a host are resolved against the root URL. Links that are not HTTP(S), only contain a fragment
+     * or are invalid are not in scope.
+     * @param href
+     * @return
+     */
+    String resolve(String href) {
+        if (href == null) {
+            return null;
+        }
+        int start = 0;
+        int end = href.length();
+        while (start < end && href.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && href.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end || href.charAt(start) == '#') {
+            return null;
+        }
+
+        /* Scheme */
+        int i = start;
+        boolean absolute = false;
+        while (i < end && isSchemeChar(href.charAt(i), i == start)) {
+            i++;
+        }
+        if (i < end && i > start && href.charAt(i) == ':') {
+            int schemeLength = i - start;
+            if (!(schemeLength == 4 && href.regionMatches(true, start, "http", 0, 4)) &&
+                    !(schemeLength == 5 && href.regionMatches(true, start, "https", 0, 5))) {
+                // mailto:, javascript:, tel:, data: and other non crawlable links.
+                return null;
+            }
+            if (i + 2 >= end || href.charAt(i + 1) != '/' || href.charAt(i + 2) != '/') {
+                return null;
+            }
+            absolute = true;
+            i += 3;
+        } else if (start + 1 < end && href.charAt(start) == '/' && href.charAt(start + 1) == '/') {
+            i = start + 2;
+        } else {
+            i = start;
+        }
+
+        /* Authority */
+        boolean hasAuthority = i != start;
+        int pathStart = i;
+        if (hasAuthority) {
+            int hostStart = i;
+            int hostEnd = -1;
+            boolean inBrackets = false;
+            while (i < end) {
+                char c = href.charAt(i);
+                if (c == '/' || c == '?' || c == '#') {
+                    break;
+                } else if (c == '@') {
+                    hostStart = i + 1;
+                    hostEnd = -1;
+                } else if (c == '[') {
+                    inBrackets = true;
+                } else if (c == ']') {
+                    inBrackets = false;
+                } else if (c == ':' && !inBrackets && hostEnd < 0) {
+                    hostEnd = i;
+                }
+                i++;
+            }
+            if (hostEnd < 0) {
+                hostEnd = i;
+            }
+            if (hostStart == hostEnd || !anyHost && !matchesHost(href, hostStart, hostEnd)) {
+                return null;
+            }
+            pathStart = i;
+        } else if (!rootHostAllowed) {
+            return null;
+        }
+
+        /* Path */
+        while (i < end && href.charAt(i) != '?' && href.charAt(i) != '#') {
+            i++;
+        }
+        int pathEnd = i;
+        if (!paths.isEmpty() && !matchesPaths(href, hasAuthority, pathStart, pathEnd)) {
+            return null;
+        }
+        if (!extensions.isEmpty() && hasExcludedExtension(href, pathStart, pathEnd)) {
+            return null;
+        }
+
+        /* Query */
+        if (maxQueryParameters >= 0 && i < end && href.charAt(i) == '?') {
+            int parameters = 0;
+            boolean inParameter = false;
+            for (i = i + 1; i < end && href.charAt(i) != '#'; i++) {
+                char c = href.charAt(i);
+                if (c == '&' || c == ';') {
+                    inParameter = false;
+                } else if (!inParameter) {
+                    inParameter = true;
+                    if (++parameters > maxQueryParameters) {
+                        return null;
+                    }
+                }
+            }
+        }
+
+        String trimmedHref = href.substring(start, end);
+        String url;
+        if (absolute) {
+            url = trimmedHref;
+        } else if (hasAuthority) {
+            url = rootScheme + ":" + trimmedHref;
+        } else {
+            url = combineUrlSegments(trimmedHref);
+        }
+
+        if (excludedPattern != null && excludedPattern.matcher(url).find()) {
+            return null;
+        }
+        try {
+            new URI(url);
+        } catch (URISyntaxException e) {
+            // Let's ignore invalid URLs.
+            System.err.println(String.format("Ignored invalid link with URL %s", url));
+            return null;
+        }
+        return url;
+    }
+
+    /**
+     * Combines the root URL with a path (handling edge cases) and returns it.
+     * @param path
+     * @return
+     */
+    private String combineUrlSegments(String path) {
+        String url = rootUrl;
+        if (!rootUri.getPath().endsWith("/") && !path.startsWith("/")) {
+            url = url + "/";
+        }
+        if (rootUri.getPath().endsWith("/") && path.startsWith("/")) {
+            url = url.substring(0, url.length() - 1) + path;
+        } else {
+            url = url + path;
+        }
+        return url;
+    }
+
+    /**
+     * Walks the host trie backwards over the host span, matching case insensitively.
+     */
+    private boolean matchesHost(String s, int hostStart, int hostEnd) {
+        CharTrie.Node node = hosts.getRoot();
+        for (int i = hostEnd - 1; i >= hostStart; i--) {
+            char c = Character.toLowerCase(s.charAt(i));
+            if (c == '.' && i > hostStart && (node.getValue() & HOST_SUBDOMAINS) != 0) {
+                return true;
+            }
+            node = node.child(c);
+            if (node == null) {
+                return false;
+            }
+        }
+        return (node.getValue() & HOST_EXACT) != 0;
+    }
+
+    /**
+     * Walks the path trie over the path the link resolves to, the longest matching prefix deciding whether the
+     * path is in scope. Paths of links without a host are prefixed with the base path of the root URL.
+     */
+    private boolean matchesPaths(String href, boolean hasAuthority, int pathStart, int pathEnd) {
+        CharTrie.Node node = paths.getRoot();
+        int decision = node.getValue();
+        if (!hasAuthority) {
+            for (int i = 0; i < basePath.length() && node != null; i++) {
+                node = node.child(basePath.charAt(i));
+                decision = node != null && node.getValue() != 0 ? node.getValue() : decision;
+            }
+            if (node != null && (pathStart == pathEnd || href.charAt(pathStart) != '/')) {
+                node = node.child('/');
+                decision = node != null && node.getValue() != 0 ? node.getValue() : decision;
+            }
+        }
+        for (int i = pathStart; i < pathEnd && node != null; i++) {
+            node = node.child(href.charAt(i));
+            decision = node != null && node.getValue() != 0 ? node.getValue() : decision;
+        }
+        if ((decision & PATH_EXCLUDED) != 0) {
+            return false;
+        }
+        return !hasIncludedPaths || (decision & PATH_INCLUDED) != 0;
+    }
+
+    /**
+     * Walks the extension trie backwards from the end of the path, up to the last dot of its last segment.
+     */
+    private boolean hasExcludedExtension(String href, int pathStart, int pathEnd) {
+        CharTrie.Node node = extensions.getRoot();
+        for (int i = pathEnd - 1; i >= pathStart; i--) {
+            char c = href.charAt(i);
+            if (c == '/') {
+                return false;
+            } else if (c == '.') {
+                return node.getValue() != 0;
+            }
+            node = node.child(Character.toLowerCase(c));
+            if (node == null) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSchemeChar(char c, boolean first) {
+        if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z') {
+            return true;
+        }
+        return !first && (c >= '0' && c <= '9' || c == '+' || c == '-' || c == '.');
+    }
+}
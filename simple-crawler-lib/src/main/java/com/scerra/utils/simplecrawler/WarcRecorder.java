@@ -0,0 +1,283 @@
+package com.scerra.utils.simplecrawler;
+
+import io.netty.handler.codec.http.HttpHeaders;
+import org.asynchttpclient.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records request/response pairs to gzip compressed WARC files, along with a replay index.
+ * Responses are snapshotted on the calling thread and written by a single background writer thread,
+ * so the HTTP response handlers never do disk I/O. When the writer falls behind and the pending records queue is full,
+ * records are dropped right away rather than blocking the calling thread; dropped records are counted and reported on close.
+ * Every WARC record is stored in its own gzip member, which allows the replay index to point at single records.
+ * Several recorders may share a directory: each one claims its own WARC files, and appends whole index lines.
+ */
+public class WarcRecorder implements Closeable {
+    public static final String INDEX_FILE_NAME = "replay.idx";
+    private static final String WARC_FILE_NAME_FORMAT = "crawl-%05d.warc.gz";
+    private static final String CRLF = "\r\n";
+    /* Maximum number of snapshots waiting to be written. */
+    private static final int MAX_PENDING_RECORDS = 1024;
+
+    private final Path directory;
+    private final long maxFileSize;
+    private final ThreadPoolExecutor writerExecutor;
+    private final AtomicLong droppedRecords = new AtomicLong();
+    /* The following fields are only accessed by the writer thread. */
+    private final FileChannel indexFile;
+    private FileChannel currentFile;
+    private String currentFileName;
+    private int fileCount;
+
+    /**
+     * Creates a recorder writing WARC files into the specified directory,
+     * starting a new file whenever the current one grows beyond maxFileSize bytes.
+     * @param directory
+     * @param maxFileSize
+     * @throws IOException
+     */
+    public WarcRecorder(String directory, long maxFileSize) throws IOException {
+        this.directory = Paths.get(directory);
+        this.maxFileSize = maxFileSize;
+        Files.createDirectories(this.directory);
+        this.indexFile = FileChannel.open(this.directory.resolve(INDEX_FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.writerExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING_RECORDS), runnable -> {
+                    Thread thread = new Thread(runnable, "warc-recorder");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (task, executor) -> droppedRecords.incrementAndGet());
+    }
+
+    /**
+     * Snapshots the specified response and schedules it to be written, together with the request that produced it.
+     * The response body is stored decoded, so any content or transfer encoding headers are dropped.
+     * @param url
+     * @param userAgent
+     * @param response
+     */
+    public void record(String url, String userAgent, Response response) {
+        byte[] requestBlock = buildRequestBlock(url, userAgent);
+        byte[] responseBlock = buildResponseBlock(response);
+        Instant date = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        writerExecutor.execute(() -> {
+            try {
+                writeRecords(url, date, requestBlock, responseBlock);
+            } catch (IOException e) {
+                System.err.println(String.format("Could not record response from URL %s: %s", url, e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Returns the number of records dropped because the writer could not keep up.
+     * @return
+     */
+    public long getDroppedRecordCount() {
+        return droppedRecords.get();
+    }
+
+    /**
+     * Waits for all pending records to be written, then closes the WARC and index files.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        writerExecutor.shutdown();
+        try {
+            writerExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        indexFile.close();
+        if (currentFile != null) {
+            currentFile.close();
+        }
+        if (droppedRecords.get() > 0) {
+            System.err.println(String.format("Dropped %d WARC records, the recorder could not keep up with the crawl.", droppedRecords.get()));
+        }
+    }
+
+    private void writeRecords(String url, Instant date, byte[] requestBlock, byte[] responseBlock) throws IOException {
+        if (currentFile == null || currentFile.position() >= maxFileSize) {
+            openNextFile();
+        }
+
+        String responseRecordId = newRecordId();
+        String requestRecordId = newRecordId();
+
+        byte[] responseRecord = gzip(buildRecord("response", responseRecordId, date, url,
+                "application/http; msgtype=response", null, responseBlock));
+        byte[] requestRecord = gzip(buildRecord("request", requestRecordId, date, url,
+                "application/http; msgtype=request", responseRecordId, requestBlock));
+
+        long responseOffset = currentFile.position();
+        writeFully(responseRecord);
+        writeFully(requestRecord);
+
+        // A single append per line, so that lines of recorders sharing the index are never interleaved.
+        ByteBuffer indexLine = ByteBuffer.wrap(String.format("%s %d %d %s\n", currentFileName, responseOffset, responseRecord.length, url)
+                .getBytes(StandardCharsets.UTF_8));
+        while (indexLine.hasRemaining()) {
+            indexFile.write(indexLine);
+        }
+    }
+
+    private void openNextFile() throws IOException {
+        if (currentFile != null) {
+            currentFile.close();
+        }
+        currentFile = null;
+        /* Atomically claim the next free file name, skipping any file left over by a previous recording
+         * or claimed by another recorder in the same directory. */
+        while (currentFile == null) {
+            currentFileName = String.format(WARC_FILE_NAME_FORMAT, fileCount++);
+            try {
+                currentFile = FileChannel.open(directory.resolve(currentFileName), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+                // Try the next name.
+            }
+        }
+        byte[] info = ("software: simple-crawler-lib" + CRLF + "format: WARC File Format 1.0" + CRLF)
+                .getBytes(StandardCharsets.UTF_8);
+        writeFully(gzip(buildRecord("warcinfo", newRecordId(), Instant.now().truncatedTo(ChronoUnit.SECONDS), null,
+                "application/warc-fields", null, info)));
+    }
+
+    private void writeFully(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            currentFile.write(buffer);
+        }
+    }
+
+    private static byte[] buildRequestBlock(String url, String userAgent) {
+        String target = url;
+        String host = null;
+        try {
+            URI uri = new URI(url);
+            target = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (uri.getRawQuery() != null) {
+                target = target + "?" + uri.getRawQuery();
+            }
+            host = uri.getRawAuthority();
+        } catch (URISyntaxException e) {
+            // Keep the absolute URL as request target.
+        }
+
+        StringBuilder block = new StringBuilder();
+        block.append("GET ").append(target).append(" HTTP/1.1").append(CRLF);
+        if (host != null) {
+            block.append("Host: ").append(host).append(CRLF);
+        }
+        block.append("User-Agent: ").append(userAgent).append(CRLF);
+        block.append(CRLF);
+        return block.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] buildResponseBlock(Response response) {
+        byte[] body = response.getResponseBodyAsBytes();
+        if (body == null) {
+            body = new byte[0];
+        }
+
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(response.getStatusCode());
+        if (response.getStatusText() != null) {
+            head.append(' ').append(response.getStatusText());
+        }
+        head.append(CRLF);
+
+        /* Always keep the headers consulted by the crawler, even when the full header map is not available. */
+        List<String> names = new ArrayList<>();
+        HttpHeaders headers = response.getHeaders();
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers) {
+                String name = header.getKey();
+                if (name.equalsIgnoreCase("content-encoding") || name.equalsIgnoreCase("transfer-encoding") ||
+                        name.equalsIgnoreCase("content-length")) {
+                    continue;
+                }
+                names.add(name.toLowerCase());
+                head.append(name).append(": ").append(header.getValue()).append(CRLF);
+            }
+        }
+        if (!names.contains("content-type") && response.getContentType() != null) {
+            head.append("Content-Type: ").append(response.getContentType()).append(CRLF);
+        }
+        String location = response.getHeader(HttpConstants.HTTP_HEADER_LOCATION);
+        if (!names.contains(HttpConstants.HTTP_HEADER_LOCATION) && location != null) {
+            head.append("Location: ").append(location).append(CRLF);
+        }
+        head.append("Content-Length: ").append(body.length).append(CRLF);
+        head.append(CRLF);
+
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] block = new byte[headBytes.length + body.length];
+        System.arraycopy(headBytes, 0, block, 0, headBytes.length);
+        System.arraycopy(body, 0, block, headBytes.length, body.length);
+        return block;
+    }
+
+    private static byte[] buildRecord(String type, String recordId, Instant date, String targetUri,
+                                      String contentType, String concurrentTo, byte[] block) {
+        StringBuilder header = new StringBuilder();
+        header.append("WARC/1.0").append(CRLF);
+        header.append("WARC-Type: ").append(type).append(CRLF);
+        header.append("WARC-Record-ID: ").append(recordId).append(CRLF);
+        header.append("WARC-Date: ").append(date).append(CRLF);
+        if (targetUri != null) {
+            header.append("WARC-Target-URI: ").append(targetUri).append(CRLF);
+        }
+        if (concurrentTo != null) {
+            header.append("WARC-Concurrent-To: ").append(concurrentTo).append(CRLF);
+        }
+        header.append("Content-Type: ").append(contentType).append(CRLF);
+        header.append("Content-Length: ").append(block.length).append(CRLF);
+        header.append(CRLF);
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(header.length() + block.length + 4);
+        record.writeBytes(header.toString().getBytes(StandardCharsets.UTF_8));
+        record.writeBytes(block);
+        record.writeBytes((CRLF + CRLF).getBytes(StandardCharsets.UTF_8));
+        return record.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressed)) {
+            gzipStream.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static String newRecordId() {
+        return "<urn:uuid:" + UUID.randomUUID() + ">";
+    }
+}
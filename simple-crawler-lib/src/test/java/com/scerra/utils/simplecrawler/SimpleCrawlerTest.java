@@ -7,13 +7,20 @@ import org.asynchttpclient.Response;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.stubbing.Answer;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -99,6 +106,261 @@ class SimpleCrawlerTest {
         assertEquals("https://google.com/my-account", accountPage.getUrl());
     }
 
+    @Test
+    void testRedirectChainsAreFollowed() throws ExecutionException, InterruptedException {
+        addMockResponse(httpClient, "https://google.com",
+                "<html><head></head><body><a href=\"/account\">My Account</a></body></html>");
+        addMockRedirectResponse(httpClient, "https://google.com/account", "/login", 303);
+        addMockRedirectResponse(httpClient, "https://google.com/login", "https://google.com/login/", 307);
+        addMockResponse(httpClient, "https://google.com/login/",
+                "<html><head></head><body><h1>Login</h1></body></html>");
+
+        SimpleCrawler crawler = new SimpleCrawler(httpClient, new CrawlerConfig());
+        Page rootPage = crawler.crawl("https://google.com");
+
+        assertNotNull(rootPage);
+        Page accountPage = rootPage.getLinks().get(0).getPage();
+        assertNotNull(accountPage);
+        assertEquals("https://google.com/account", accountPage.getUrl());
+
+        Page loginPage = accountPage.getRedirectsTo();
+        assertNotNull(loginPage);
+        assertEquals("https://google.com/login", loginPage.getUrl());
+
+        Page loginTargetPage = loginPage.getRedirectsTo();
+        assertNotNull(loginTargetPage);
+        assertEquals("https://google.com/login/", loginTargetPage.getUrl());
+        assertNull(loginTargetPage.getRedirectsTo());
+    }
+
+    @Test
+    void testRedirectLoopsAreDetected() throws ExecutionException, InterruptedException {
+        addMockResponse(httpClient, "https://google.com",
+                "<html><head></head><body><a href=\"/a\">A</a></body></html>");
+        addMockRedirectResponse(httpClient, "https://google.com/a", "https://google.com/b", 302);
+        addMockRedirectResponse(httpClient, "https://google.com/b", "https://google.com/a", 302);
+
+        SimpleCrawler crawler = new SimpleCrawler(httpClient, new CrawlerConfig());
+        Page rootPage = crawler.crawl("https://google.com");
+
+        assertNotNull(rootPage);
+        Page pageA = rootPage.getLinks().get(0).getPage();
+        assertNotNull(pageA);
+        assertEquals("https://google.com/b", pageA.getRedirectsTo().getUrl());
+        assertEquals(pageA, pageA.getRedirectsTo().getRedirectsTo());
+    }
+
+    @Test
+    void testRedirectsAreNotFollowedBeyondLimit() throws ExecutionException, InterruptedException {
+        addMockResponse(httpClient, "https://google.com",
+                "<html><head></head><body><a href=\"/a\">A</a></body></html>");
+        addMockRedirectResponse(httpClient, "https://google.com/a", "https://google.com/b", 301);
+        addMockRedirectResponse(httpClient, "https://google.com/b", "https://google.com/c", 301);
+
+        SimpleCrawler crawler = new SimpleCrawler(httpClient, new CrawlerConfig().setMaxRedirects(1));
+        Page rootPage = crawler.crawl("https://google.com");
+
+        assertNotNull(rootPage);
+        Page pageA = rootPage.getLinks().get(0).getPage();
+        Page pageB = pageA.getRedirectsTo();
+        assertNotNull(pageB);
+        assertEquals("https://google.com/b", pageB.getUrl());
+        assertNull(pageB.getRedirectsTo());
+        verify(httpClient, never()).prepareGet("https://google.com/c");
+    }
+
+    @Test
+    void testPermanentRedirectsAreResolvedFromCache() throws ExecutionException, InterruptedException, IOException {
+        addMockResponse(httpClient, "https://google.com",
+                "<html><head></head><body><a href=\"/account\">My Account</a></body></html>");
+        addMockRedirectResponse(httpClient, "https://google.com/account", "https://google.com/my-account");
+        addMockResponse(httpClient, "https://google.com/my-account",
+                "<html><head></head><body><h1>Account data</h1></body></html>");
+
+        // Crawlers of the same engine share its redirect cache.
+        Page rootPage;
+        try (CrawlerEngine engine = new CrawlerEngine(httpClient)) {
+            engine.createCrawler(new CrawlerConfig()).crawl("https://google.com");
+            rootPage = engine.createCrawler(new CrawlerConfig()).crawl("https://google.com");
+        }
+
+        assertNotNull(rootPage);
+        Page redirectPage = rootPage.getLinks().get(0).getPage();
+        assertNotNull(redirectPage);
+        assertEquals("https://google.com/account", redirectPage.getUrl());
+        assertNotNull(redirectPage.getRedirectsTo());
+        assertEquals("https://google.com/my-account", redirectPage.getRedirectsTo().getUrl());
+        verify(httpClient, times(1)).prepareGet("https://google.com/account");
+        verify(httpClient, times(2)).prepareGet("https://google.com/my-account");
+    }
+
+    @Test
+    void testRedirectRequestFailureIsHandled() throws ExecutionException, InterruptedException {
+        addMockResponse(httpClient, "https://google.com",
+                "<html><head></head><body><a href=\"/account\">My Account</a></body></html>");
+        addMockRedirectResponse(httpClient, "https://google.com/account", "https://google.com/my-account");
+        doThrow(new IllegalStateException("Closed")).when(httpClient).prepareGet("https://google.com/my-account");
+
+        SimpleCrawler crawler = new SimpleCrawler(httpClient, new CrawlerConfig());
+        Page rootPage = crawler.crawl("https://google.com");
+
+        assertNotNull(rootPage);
+        Page redirectPage = rootPage.getLinks().get(0).getPage();
+        assertNotNull(redirectPage);
+        assertNotNull(redirectPage.getRedirectsTo());
+        assertEquals("https://google.com/my-account", redirectPage.getRedirectsTo().getUrl());
+        assertTrue(redirectPage.getRedirectsTo().getLinks().isEmpty());
+    }
+
+    @Test
+    void testFailingSectionIsDeferredByCircuitBreaker() throws ExecutionException, InterruptedException {
+        addMockResponse(httpClient, "https://google.com",
+                "<html><head></head><body><a href=\"/search/1\">1</a><a href=\"/search/2\">2</a><a href=\"/search/3\">3</a>" +
+                        "<a href=\"/search/4\">4</a><a href=\"/about\">About</a></body></html>");
+        for (int i = 1; i <= 4; i++) {
+            addMockErrorResponse(httpClient, "https://google.com/search/" + i, 503);
+        }
+        addMockResponse(httpClient, "https://google.com/about",
+                "<html><head></head><body><h1>About</h1></body></html>");
+
+        CrawlerConfig config = new CrawlerConfig()
+                .setCircuitBreakerEnabled(true)
+                .setCircuitBreakerWindowSize(4)
+                .setCircuitBreakerMinSamples(2)
+                .setCircuitBreakerOpenDuration(20);
+        SimpleCrawler crawler = new SimpleCrawler(httpClient, config);
+        Page rootPage = crawler.crawl("https://google.com");
+
+        assertNotNull(rootPage);
+        assertEquals(5, rootPage.getLinks().size());
+        rootPage.getLinks().forEach(link -> assertNotNull(link.getPage()));
+
+        /* The healthy page is crawled before the pages deferred by the open breaker. */
+        InOrder inOrder = inOrder(httpClient);
+        inOrder.verify(httpClient).prepareGet("https://google.com/search/2");
+        inOrder.verify(httpClient).prepareGet("https://google.com/about");
+        inOrder.verify(httpClient).prepareGet("https://google.com/search/3");
+        inOrder.verify(httpClient).prepareGet("https://google.com/search/4");
+
+        CircuitBreakerStats searchStats = crawler.getCircuitBreakerStats().stream()
+                .filter(stats -> stats.getKey().equals("google.com/search")).findFirst().orElse(null);
+        assertNotNull(searchStats);
+        assertEquals(CircuitBreaker.State.OPEN, searchStats.getState());
+        assertTrue(searchStats.getTripCount() >= 1);
+        assertTrue(searchStats.getDeferredCount() >= 2);
+        assertEquals(0, searchStats.getDeferredPages());
+    }
+
+    @Test
+    void testFailingSectionIsDroppedWhenBreakerGivesUp() throws ExecutionException, InterruptedException {
+        StringBuilder rootResponse = new StringBuilder("<html><head></head><body>");
+        for (int i = 1; i <= 8; i++) {
+            rootResponse.append("<a href=\"/search/").append(i).append("\">").append(i).append("</a>");
+        }
+        addMockResponse(httpClient, "https://google.com", rootResponse.append("</body></html>").toString());
+        for (int i = 1; i <= 4; i++) {
+            addMockErrorResponse(httpClient, "https://google.com/search/" + i, 503);
+        }
+
+        CrawlerConfig config = new CrawlerConfig()
+                .setCircuitBreakerEnabled(true)
+                .setCircuitBreakerWindowSize(4)
+                .setCircuitBreakerMinSamples(2)
+                .setCircuitBreakerOpenDuration(20)
+                .setCircuitBreakerMaxFailedProbes(2);
+        SimpleCrawler crawler = new SimpleCrawler(httpClient, config);
+        Page rootPage = crawler.crawl("https://google.com");
+
+        assertNotNull(rootPage);
+        rootPage.getLinks().forEach(link -> assertNotNull(link.getPage()));
+        /* Two requests open the breaker, then two probes fail and the remaining pages are dropped. */
+        for (int i = 5; i <= 8; i++) {
+            verify(httpClient, never()).prepareGet("https://google.com/search/" + i);
+        }
+
+        CircuitBreakerStats searchStats = crawler.getCircuitBreakerStats().stream()
+                .filter(stats -> stats.getKey().equals("google.com/search")).findFirst().orElse(null);
+        assertNotNull(searchStats);
+        assertTrue(searchStats.isGivenUp());
+        assertEquals(4, searchStats.getDroppedCount());
+        assertEquals(0, searchStats.getDeferredPages());
+    }
+
+    @Test
+    void testDeferredPagesAreReleasedWhenBreakerCloses() throws ExecutionException, InterruptedException {
+        addMockResponse(httpClient, "https://google.com",
+                "<html><head></head><body><a href=\"/search/1\">1</a><a href=\"/search/2\">2</a><a href=\"/search/3\">3</a>" +
+                        "<a href=\"/search/4\">4</a><a href=\"/search/5\">5</a></body></html>");
+        addMockErrorResponse(httpClient, "https://google.com/search/1", 503);
+        addMockErrorResponse(httpClient, "https://google.com/search/2", 503);
+        for (int i = 3; i <= 5; i++) {
+            addMockResponse(httpClient, "https://google.com/search/" + i,
+                    "<html><head></head><body><h1>Results</h1></body></html>");
+        }
+
+        CrawlerConfig config = new CrawlerConfig()
+                .setCircuitBreakerEnabled(true)
+                .setCircuitBreakerWindowSize(4)
+                .setCircuitBreakerMinSamples(2)
+                .setCircuitBreakerOpenDuration(20);
+        SimpleCrawler crawler = new SimpleCrawler(httpClient, config);
+        Page rootPage = crawler.crawl("https://google.com");
+
+        assertNotNull(rootPage);
+        for (int i = 3; i <= 5; i++) {
+            verify(httpClient).prepareGet("https://google.com/search/" + i);
+        }
+        CircuitBreakerStats searchStats = crawler.getCircuitBreakerStats().stream()
+                .filter(stats -> stats.getKey().equals("google.com/search")).findFirst().orElse(null);
+        assertNotNull(searchStats);
+        assertEquals(CircuitBreaker.State.CLOSED, searchStats.getState());
+        assertEquals(3, searchStats.getDeferredCount());
+        assertEquals(0, searchStats.getDeferredPages());
+        assertFalse(searchStats.isGivenUp());
+    }
+
+    @Test
+    void testOnlyProbeOutcomeDecidesHalfOpenBreaker() {
+        CrawlerConfig config = new CrawlerConfig()
+                .setCircuitBreakerEnabled(true)
+                .setCircuitBreakerWindowSize(4)
+                .setCircuitBreakerMinSamples(2)
+                .setCircuitBreakerOpenDuration(0);
+        CircuitBreaker breaker = new CircuitBreaker("google.com/search", config);
+        long now = System.nanoTime();
+        breaker.recordOutcome("https://google.com/search/1", 10, true, now);
+        breaker.recordOutcome("https://google.com/search/2", 10, true, now);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        assertTrue(breaker.allowRequest("https://google.com/search/4", now));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest("https://google.com/search/5", now));
+
+        /* A request sent before the breaker opened completes successfully, the breaker keeps waiting for the probe. */
+        breaker.recordOutcome("https://google.com/search/3", 10, false, now);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(-1, breaker.millisUntilNextRequest(now));
+
+        breaker.recordOutcome("https://google.com/search/4", 10, true, now);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testCancelledCrawlSendsNoRequests() throws ExecutionException, InterruptedException {
+        addMockResponse(httpClient, "https://google.com",
+                "<html><head></head><body><h1>Home</h1></body></html>");
+
+        SimpleCrawler crawler = new SimpleCrawler(httpClient, new CrawlerConfig());
+        crawler.cancel();
+        assertNull(crawler.crawl("https://google.com"));
+        verify(httpClient, never()).prepareGet(anyString());
+
+        /* Cancellation only applies to a single crawl. */
+        Page rootPage = crawler.crawl("https://google.com");
+        assertNotNull(rootPage);
+        assertEquals("https://google.com", rootPage.getUrl());
+    }
+
     @Test
     void testLinksOutsideRootDomainAreNotCrawled() throws ExecutionException, InterruptedException {
         addMockResponse(httpClient, "https://google.com",
@@ -122,17 +384,171 @@ class SimpleCrawlerTest {
         assertEquals("https://google.com/my-account", accountPage.getUrl());
     }
 
+    @Test
+    void testLinksOutsideScopeRulesAreNotCrawled() throws ExecutionException, InterruptedException {
+        addMockResponse(httpClient, "https://google.com",
+                "<html><head></head><body>" +
+                        "<a href=\"https://docs.google.com/guide\">Guide</a>" +
+                        "<a href=\"https://example.com/\">Example</a>" +
+                        "<a href=\"/search?q=a&amp;page=2&amp;sort=asc\">Search</a>" +
+                        "<a href=\"/files/report.PDF\">Report</a>" +
+                        "<a href=\"/private/data\">Private</a>" +
+                        "<a href=\"/shop/session/4f2a\">Session</a>" +
+                        "<a href=\"mailto:info@google.com\">Mail</a>" +
+                        "<a href=\"#top\">Top</a>" +
+                        "</body></html>");
+        addMockResponse(httpClient, "https://docs.google.com/guide",
+                "<html><head></head><body><h1>Guide</h1></body></html>");
+
+        ScopeRules scopeRules = new ScopeRules()
+                .allowHost("google.com")
+                .allowHost("*.google.com")
+                .excludePathPrefix("/private/")
+                .excludePattern("/session/[0-9a-f]+")
+                .excludeExtensions("pdf", "zip")
+                .setMaxQueryParameters(2);
+        SimpleCrawler crawler = new SimpleCrawler(httpClient, new CrawlerConfig().setScopeRules(scopeRules));
+        Page rootPage = crawler.crawl("https://google.com");
+
+        assertNotNull(rootPage);
+        assertEquals(1, rootPage.getLinks().size());
+        assertEquals("https://docs.google.com/guide", rootPage.getLinks().get(0).getPage().getUrl());
+        verify(httpClient, never()).prepareGet("https://google.com/files/report.PDF");
+    }
+
+    @Test
+    void testCrawlTrapsAreDetected() throws ExecutionException, InterruptedException {
+        addMockResponse(httpClient, "https://google.com",
+                "<html><head></head><body><a href=\"/events?month=1\">Events</a><a href=\"/a/b/a/b/a/b/a\">Loop</a></body></html>");
+        for (int month = 1; month <= 4; month++) {
+            addMockResponse(httpClient, "https://google.com/events?month=" + month,
+                    "<html><head></head><body><a href=\"/events?month=" + (month + 1) + "\">Next month</a></body></html>");
+        }
+
+        CrawlerConfig config = new CrawlerConfig()
+                .setCrawlTrapDetectionEnabled(true)
+                .setCrawlTrapMinFetches(3)
+                .setCrawlTrapThrottleInterval(2);
+        SimpleCrawler crawler = new SimpleCrawler(httpClient, config);
+        Page rootPage = crawler.crawl("https://google.com");
+
+        assertNotNull(rootPage);
+        verify(httpClient, never()).prepareGet("https://google.com/a/b/a/b/a/b/a");
+        verify(httpClient, never()).prepareGet("https://google.com/events?month=5");
+
+        List<CrawlTrapStats> crawlTraps = crawler.getCrawlTrapStats();
+        assertEquals(2, crawlTraps.size());
+        assertEquals("google.com/a/b/a/b/a/b/a", crawlTraps.get(0).getPattern());
+        assertEquals(CrawlTrapStats.Action.DROP, crawlTraps.get(0).getAction());
+        assertEquals("google.com/events?month", crawlTraps.get(1).getPattern());
+        assertEquals(CrawlTrapStats.Action.THROTTLE, crawlTraps.get(1).getAction());
+        assertEquals(1, crawlTraps.get(1).getRejectedCount());
+        // Links to rejected pages still point to a page.
+        assertEquals("https://google.com/a/b/a/b/a/b/a", rootPage.getLinks().get(1).getPage().getUrl());
+    }
+
+    @Test
+    void testLeafPagesAreNotTrapped() throws ExecutionException, InterruptedException {
+        StringBuilder listing = new StringBuilder("<html><head></head><body>");
+        for (int post = 1; post <= 8; post++) {
+            listing.append("<a href=\"/posts/").append(post).append("\">Post</a>");
+            addMockResponse(httpClient, "https://google.com/posts/" + post,
+                    "<html><head></head><body><a href=\"/\">Home</a></body></html>");
+        }
+        addMockResponse(httpClient, "https://google.com", listing.append("</body></html>").toString());
+
+        CrawlerConfig config = new CrawlerConfig()
+                .setCrawlTrapDetectionEnabled(true)
+                .setCrawlTrapMinFetches(3);
+        SimpleCrawler crawler = new SimpleCrawler(httpClient, config);
+        Page rootPage = crawler.crawl("https://google.com");
+
+        assertNotNull(rootPage);
+        for (int post = 1; post <= 8; post++) {
+            verify(httpClient).prepareGet("https://google.com/posts/" + post);
+        }
+        assertTrue(crawler.getCrawlTrapStats().isEmpty());
+    }
+
+    @Test
+    void testRecordedCrawlIsReplayed(@TempDir Path warcDirectory) throws ExecutionException, InterruptedException, IOException {
+        addMockResponse(httpClient, "https://google.com",
+                "<html><head></head><body><a href=\"/account\">My Account</a><a href=\"/support\">Support</a></body></html>");
+        addMockRedirectResponse(httpClient, "https://google.com/account", "https://google.com/my-account");
+        addMockResponse(httpClient, "https://google.com/my-account",
+                "<html><head></head><body><h1>Account data</h1><a href=\"/support\">Account Support</a></body></html>");
+        addMockResponse(httpClient, "https://google.com/support",
+                "<html><head></head><body><h1>Support page</h1></body></html>");
+
+        CrawlerConfig recordingConfig = new CrawlerConfig().setWarcRecordingDirectory(warcDirectory.toString());
+        new SimpleCrawler(httpClient, recordingConfig).crawl("https://google.com");
+
+        SimpleCrawler replayCrawler = SimpleCrawlerFactory.createReplayCrawler(new CrawlerConfig(), warcDirectory.toString());
+        Page rootPage = replayCrawler.crawl("https://google.com");
+        replayCrawler.shutdown();
+
+        assertNotNull(rootPage);
+        assertEquals(2, rootPage.getLinks().size());
+
+        Page redirectPage = rootPage.getLinks().get(0).getPage();
+        assertNotNull(redirectPage);
+        assertEquals("https://google.com/account", redirectPage.getUrl());
+        assertNotNull(redirectPage.getRedirectsTo());
+
+        Page accountPage = redirectPage.getRedirectsTo();
+        assertEquals("https://google.com/my-account", accountPage.getUrl());
+        assertEquals(1, accountPage.getLinks().size());
+        assertEquals("Account Support", accountPage.getLinks().get(0).getText());
+
+        Page supportPage = rootPage.getLinks().get(1).getPage();
+        assertNotNull(supportPage);
+        assertEquals(supportPage, accountPage.getLinks().get(0).getPage());
+
+        /* The replay client answers generic client queries. */
+        try (ReplayAsyncHttpClient replayClient = new ReplayAsyncHttpClient(warcDirectory.toString())) {
+            assertNotNull(replayClient.getConfig());
+            assertEquals(0, replayClient.getClientStats().getTotalConnectionCount());
+        }
+    }
+
+    @Test
+    void testProfiledCrawlIsSummarised(@TempDir Path directory) throws ExecutionException, InterruptedException, IOException {
+        addMockResponse(httpClient, "https://google.com",
+                "<html><head></head><body><a href=\"/support\">Support</a></body></html>");
+        addMockResponse(httpClient, "https://google.com/support",
+                "<html><head></head><body><h1>Support page</h1></body></html>");
+        String warcDirectory = directory.resolve("warc").toString();
+        new SimpleCrawler(httpClient, new CrawlerConfig().setWarcRecordingDirectory(warcDirectory)).crawl("https://google.com");
+
+        Path recordingFile = directory.resolve("crawl.jfr");
+        CrawlerConfig profilingConfig = new CrawlerConfig().setFlightRecordingFile(recordingFile.toString());
+        SimpleCrawler replayCrawler = SimpleCrawlerFactory.createReplayCrawler(profilingConfig, warcDirectory);
+        assertNotNull(replayCrawler.crawl("https://google.com"));
+        replayCrawler.shutdown();
+
+        CrawlProfileSummary summary = CrawlProfileSummary.read(recordingFile);
+        assertEquals(2, summary.getCount(CrawlEvents.FETCH));
+        assertEquals(2, summary.getCount(CrawlEvents.PARSE));
+        assertEquals(2, summary.getCount(CrawlEvents.LINK_EXTRACTION));
+        assertEquals(2, summary.getCount(CrawlEvents.ENQUEUE));
+        assertTrue(summary.getCount(CrawlEvents.DEQUEUE) >= 2);
+        assertTrue(summary.getCount(CrawlEvents.LOCK) >= 2);
+        assertTrue(summary.toString().contains("Link extraction"));
+    }
+
     @SuppressWarnings("unchecked")
     private void addMockResponse(AsyncHttpClient httpClient, String url, String response) throws ExecutionException, InterruptedException {
         BoundRequestBuilder requestBuilder = mock(BoundRequestBuilder.class);
         doReturn(requestBuilder).when(httpClient).prepareGet(url);
         when(requestBuilder.addHeader(anyString(), anyString())).thenReturn(requestBuilder);
+        when(requestBuilder.setRequestTimeout(anyInt())).thenReturn(requestBuilder);
         ListenableFuture<Response> responseFuture = mock(ListenableFuture.class);
         when(requestBuilder.execute()).thenReturn(responseFuture);
 
         Response responseObj = mock(Response.class);
         when(responseObj.getStatusCode()).thenReturn(200);
         when(responseObj.getResponseBody()).thenReturn(response);
+        lenient().when(responseObj.getResponseBodyAsBytes()).thenReturn(response.getBytes(StandardCharsets.UTF_8));
         when(responseObj.getContentType()).thenReturn("text/html");
         when(responseFuture.get()).thenReturn(responseObj);
 
@@ -144,15 +560,40 @@ class SimpleCrawlerTest {
     }
 
     @SuppressWarnings("unchecked")
+    private void addMockErrorResponse(AsyncHttpClient httpClient, String url, int statusCode) throws ExecutionException, InterruptedException {
+        BoundRequestBuilder requestBuilder = mock(BoundRequestBuilder.class);
+        doReturn(requestBuilder).when(httpClient).prepareGet(url);
+        when(requestBuilder.addHeader(anyString(), anyString())).thenReturn(requestBuilder);
+        when(requestBuilder.setRequestTimeout(anyInt())).thenReturn(requestBuilder);
+        ListenableFuture<Response> responseFuture = mock(ListenableFuture.class);
+        when(requestBuilder.execute()).thenReturn(responseFuture);
+
+        Response responseObj = mock(Response.class);
+        when(responseObj.getStatusCode()).thenReturn(statusCode);
+        when(responseFuture.get()).thenReturn(responseObj);
+
+        doAnswer((Answer<ListenableFuture<Response>>) invocation -> {
+            Runnable callback = invocation.getArgument(0);
+            callback.run();
+            return responseFuture;
+        }).when(responseFuture).addListener(any(), any());
+    }
+
     private void addMockRedirectResponse(AsyncHttpClient httpClient, String url, String redirectUrl) throws ExecutionException, InterruptedException {
+        addMockRedirectResponse(httpClient, url, redirectUrl, 301);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addMockRedirectResponse(AsyncHttpClient httpClient, String url, String redirectUrl, int statusCode) throws ExecutionException, InterruptedException {
         BoundRequestBuilder requestBuilder = mock(BoundRequestBuilder.class);
         doReturn(requestBuilder).when(httpClient).prepareGet(url);
         when(requestBuilder.addHeader(anyString(), anyString())).thenReturn(requestBuilder);
+        when(requestBuilder.setRequestTimeout(anyInt())).thenReturn(requestBuilder);
         ListenableFuture<Response> responseFuture = mock(ListenableFuture.class);
         when(requestBuilder.execute()).thenReturn(responseFuture);
 
         Response responseObj = mock(Response.class);
-        when(responseObj.getStatusCode()).thenReturn(301);
+        when(responseObj.getStatusCode()).thenReturn(statusCode);
         when(responseObj.getHeader("location")).thenReturn(redirectUrl);
         when(responseFuture.get()).thenReturn(responseObj);
 
@@ -0,0 +1,93 @@
+#!/usr/bin/env bash
+#
+# Compares the startup time of the Spring Boot jar, the fast start jar (with and without AppCDS) and the native image.
+# Every variant runs the same recorded crawl twice:
+#  - replay: responses are served from the WARC files by the replay client, so the time only depends on startup and
+#    CPU work, but the HTTP client and Netty classes are never loaded;
+#  - network: responses are served over HTTP by src/appcds/WarcSiteServer.java on the loopback interface, so the crawl
+#    goes through the same networking code as a real one. Only the links relative to the root URL, or absolute ones on
+#    the local server, are followed.
+#
+# Build the artifacts first, skipping the ones not needed:
+#   mvn package -Pcli,appcds      (Spring Boot jar, fast start jar and AppCDS archive)
+#   mvn package -Pnative          (native image, requires GraalVM)
+#
+# Usage: ./benchmark-startup.sh rootUrl [runs]
+# The root URL is crawled once and recorded into target/startup-benchmark-warc, if not already there.
+
+set -e
+
+if [ $# -lt 1 ]; then
+    echo "Usage: $0 rootUrl [runs]"
+    exit 1
+fi
+
+cd "$(dirname "$0")"
+ROOT_URL="$1"
+RUNS="${2:-10}"
+TARGET=target
+VERSION=0.0.1-SNAPSHOT
+SPRING_JAR="$TARGET/web-crawler-app-$VERSION.jar"
+CLI_JAR="$TARGET/web-crawler-app-$VERSION-cli.jar"
+CDS_ARCHIVE="$TARGET/web-crawler-cli.jsa"
+NATIVE_IMAGE="$TARGET/web-crawler"
+WARC_DIR="$TARGET/startup-benchmark-warc"
+SERVER_PORT="${SERVER_PORT:-8766}"
+SERVER_LOG="$TARGET/startup-benchmark-server.log"
+
+if [ ! -f "$CLI_JAR" ]; then
+    echo "$CLI_JAR not found, build it with: mvn package -Pcli"
+    exit 1
+fi
+
+if [ ! -d "$WARC_DIR" ]; then
+    echo "Recording $ROOT_URL into $WARC_DIR"
+    java -jar "$CLI_JAR" --record-warc="$WARC_DIR" "$ROOT_URL" > /dev/null
+fi
+
+# Serve the recorded crawl on the loopback interface for the network runs.
+java src/appcds/WarcSiteServer.java "$WARC_DIR" "$SERVER_PORT" > "$SERVER_LOG" 2>&1 &
+SERVER_PID=$!
+trap 'kill $SERVER_PID 2> /dev/null' EXIT
+until grep -q "^Serving" "$SERVER_LOG"; do
+    if ! kill -0 $SERVER_PID 2> /dev/null; then
+        cat "$SERVER_LOG"
+        exit 1
+    fi
+    sleep 0.1
+done
+# Same path and query as the root URL, on the local server.
+LOCAL_ROOT_URL="http://localhost:$SERVER_PORT/$(echo "$ROOT_URL" | sed -E 's#^[a-zA-Z]+://[^/]*/?##')"
+
+# Runs the specified command RUNS times with the arguments of a replay and of a network crawl,
+# printing the average wall clock time of each.
+benchmark() {
+    local name="$1"
+    shift
+    local replay_total=0 network_total=0
+    for ((i = 0; i < RUNS; i++)); do
+        local start end
+        start=$(date +%s%N)
+        "$@" --replay-warc="$WARC_DIR" "$ROOT_URL" > /dev/null
+        end=$(date +%s%N)
+        replay_total=$((replay_total + (end - start) / 1000000))
+        start=$(date +%s%N)
+        "$@" "$LOCAL_ROOT_URL" > /dev/null
+        end=$(date +%s%N)
+        network_total=$((network_total + (end - start) / 1000000))
+    done
+    printf "%-24s %9d ms %9d ms\n" "$name" $((replay_total / RUNS)) $((network_total / RUNS))
+}
+
+echo "Average wall clock time over $RUNS runs:"
+printf "%-24s %12s %12s\n" "" "replay" "network"
+if [ -f "$SPRING_JAR" ]; then
+    benchmark "Spring Boot jar" java -jar "$SPRING_JAR"
+fi
+benchmark "Fast start jar" java -jar "$CLI_JAR"
+if [ -f "$CDS_ARCHIVE" ]; then
+    benchmark "Fast start jar + AppCDS" java -XX:SharedArchiveFile="$CDS_ARCHIVE" -jar "$CLI_JAR"
+fi
+if [ -x "$NATIVE_IMAGE" ]; then
+    benchmark "Native image" "$NATIVE_IMAGE"
+fi
@@ -0,0 +1,158 @@
+package com.scerra.utils.webcrawlerapp.appcds;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Serves the responses recorded in a WARC directory over HTTP on the loopback interface, matching requests by path
+ * and query, so that a crawl of the recorded site goes through the real HTTP client and networking code.
+ * Used by the appcds profile for the training crawl, and by benchmark-startup.sh. Run as a single-file source program:
+ * java WarcSiteServer.java warcDirectory port [command...]
+ * With port 0 any free port is used. If a command is given, it is run with every {rootUrl} argument replaced by the URL
+ * of the served site, and the server exits with its exit code once it terminates; otherwise the server runs until killed.
+ */
+public class WarcSiteServer {
+	private static final String INDEX_FILE_NAME = "replay.idx";
+	private static final String ROOT_URL_PLACEHOLDER = "{rootUrl}";
+	private static final String CRLF = "\r\n";
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: java WarcSiteServer.java warcDirectory port [command...]");
+			System.exit(1);
+		}
+		Map<String, RecordedResponse> responses = readResponses(Paths.get(args[0]));
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[1])), 0);
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		server.setExecutor(executor);
+		server.createContext("/", exchange -> serve(exchange, responses));
+		server.start();
+		String rootUrl = String.format("http://localhost:%d/", server.getAddress().getPort());
+		System.out.println(String.format("Serving %d recorded responses from %s on %s", responses.size(), args[0], rootUrl));
+
+		if (args.length > 2) {
+			List<String> command = new ArrayList<>();
+			for (String arg : Arrays.asList(args).subList(2, args.length)) {
+				command.add(arg.replace(ROOT_URL_PLACEHOLDER, rootUrl));
+			}
+			int exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+			server.stop(0);
+			executor.shutdown();
+			System.exit(exitCode);
+		}
+	}
+
+	private static void serve(HttpExchange exchange, Map<String, RecordedResponse> responses) throws IOException {
+		try {
+			RecordedResponse response = responses.get(pathAndQuery(exchange.getRequestURI()));
+			if (response == null) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			response.headers.forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+			exchange.sendResponseHeaders(response.statusCode, response.body.length == 0 ? -1 : response.body.length);
+			if (response.body.length > 0) {
+				try (OutputStream body = exchange.getResponseBody()) {
+					body.write(response.body);
+				}
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Reads the response records listed in the replay index, indexed by the path and query of their URL.
+	 */
+	private static Map<String, RecordedResponse> readResponses(Path directory) throws IOException {
+		Map<String, RecordedResponse> responses = new HashMap<>();
+		for (String line : Files.readAllLines(directory.resolve(INDEX_FILE_NAME), StandardCharsets.UTF_8)) {
+			// Index line format: fileName offset length url
+			String[] fields = line.split(" ", 4);
+			if (fields.length != 4) {
+				continue;
+			}
+			byte[] member = new byte[Integer.parseInt(fields[2])];
+			try (RandomAccessFile file = new RandomAccessFile(directory.resolve(fields[0]).toFile(), "r")) {
+				file.seek(Long.parseLong(fields[1]));
+				file.readFully(member);
+			}
+			byte[] record;
+			try (InputStream gzipStream = new GZIPInputStream(new ByteArrayInputStream(member))) {
+				record = gzipStream.readAllBytes();
+			}
+			responses.put(pathAndQuery(URI.create(fields[3])), parseResponseRecord(record));
+		}
+		return responses;
+	}
+
+	/**
+	 * Parses the HTTP response block of a WARC response record.
+	 */
+	private static RecordedResponse parseResponseRecord(byte[] record) {
+		int blockStart = indexOf(record, CRLF + CRLF, 0) + 4;
+		int bodyStart = indexOf(record, CRLF + CRLF, blockStart) + 4;
+		String[] head = new String(record, blockStart, bodyStart - blockStart, StandardCharsets.ISO_8859_1).split(CRLF);
+
+		RecordedResponse response = new RecordedResponse();
+		response.statusCode = Integer.parseInt(head[0].split(" ")[1]);
+		int contentLength = 0;
+		for (int i = 1; i < head.length; i++) {
+			int separator = head[i].indexOf(':');
+			if (separator <= 0) {
+				continue;
+			}
+			String name = head[i].substring(0, separator).trim();
+			String value = head[i].substring(separator + 1).trim();
+			if (name.equalsIgnoreCase("content-length")) {
+				contentLength = Integer.parseInt(value);
+			} else if (!name.equalsIgnoreCase("connection") && !name.equalsIgnoreCase("date")) {
+				response.headers.put(name, value);
+			}
+		}
+		response.body = Arrays.copyOfRange(record, bodyStart, bodyStart + contentLength);
+		return response;
+	}
+
+	private static String pathAndQuery(URI uri) {
+		String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+		return uri.getRawQuery() != null ? path + "?" + uri.getRawQuery() : path;
+	}
+
+	private static int indexOf(byte[] bytes, String pattern, int from) {
+		byte[] patternBytes = pattern.getBytes(StandardCharsets.ISO_8859_1);
+		for (int i = from; i <= bytes.length - patternBytes.length; i++) {
+			if (Arrays.equals(bytes, i, i + patternBytes.length, patternBytes, 0, patternBytes.length)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Malformed WARC record");
+	}
+
+	private static class RecordedResponse {
+		private int statusCode;
+		private final Map<String, String> headers = new HashMap<>();
+		private byte[] body;
+	}
+}
@@ -0,0 +1,58 @@
+package com.scerra.utils.webcrawlerapp;
+
+import com.scerra.utils.simplecrawler.Page;
+
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Writes a crawled page graph as text, listing page URLs, links and redirects.
+ */
+public class CrawlResultWriter {
+
+	/**
+	 * Writes the page graph reachable from the specified root page. Returns the number of pages written.
+	 * @param rootPage
+	 * @param out
+	 * @return
+	 */
+	public static int write(Page rootPage, PrintWriter out) {
+		/*
+		*  Performs a breadth-first traversal of the page graph, printing page URLs, links and redirects.
+		*  Uses a visited pages set to avoid cycles in the page graph.
+		*/
+		Set<String> visitedPagesUrl = new HashSet<>();
+		Queue<Page> queue = new LinkedList<>();
+		queue.add(rootPage);
+
+		while (!queue.isEmpty()) {
+			Page currentPage = queue.poll();
+			if (!visitedPagesUrl.contains(currentPage.getUrl())) {
+				visitedPagesUrl.add(currentPage.getUrl());
+				out.println(String.format("Page %s", currentPage.getUrl()));
+				if (currentPage.getRedirectsTo() == null) {
+					out.println(String.format("\t%d outbound links", currentPage.getLinks().size()));
+				}
+
+				currentPage.getLinks().forEach(link -> {
+					out.println(String.format("\t\t%s -> %s", link.getText(), link.getUrl()));
+					if (link.getPage() != null && !visitedPagesUrl.contains(link.getPage().getUrl())) {
+						queue.add(link.getPage());
+					}
+				});
+
+				if (currentPage.getRedirectsTo() != null) {
+					out.println(String.format("\t[redirect] -> %s", currentPage.getRedirectsTo().getUrl()));
+					if (!visitedPagesUrl.contains(currentPage.getRedirectsTo().getUrl())) {
+						queue.add(currentPage.getRedirectsTo());
+					}
+				}
+			}
+		}
+		out.flush();
+		return visitedPagesUrl.size();
+	}
+}
@@ -0,0 +1,147 @@
+package com.scerra.utils.webcrawlerapp;
+
+import com.scerra.utils.simplecrawler.CrawlProfileSummary;
+import com.scerra.utils.simplecrawler.CrawlerConfig;
+import com.scerra.utils.simplecrawler.Page;
+import com.scerra.utils.simplecrawler.SimpleCrawler;
+import jdk.jfr.FlightRecorder;
+
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.scerra.utils.simplecrawler.SimpleCrawlerFactory.createReplayCrawler;
+import static com.scerra.utils.simplecrawler.SimpleCrawlerFactory.createSimpleCrawler;
+
+/**
+ * Lightweight command line entry point, running a single crawl without starting a Spring context.
+ * This is the main class of the fast start jar and of the native image.
+ */
+public class CrawlerCli {
+	private static final String USAGE = "Usage: \njava -jar webcrawler.jar [options] rootUrl [maxConcurrentRequests] [requestTimeout (ms)] [userAgent]\n" +
+			"Options:\n" +
+			"\t--record-warc=<dir>\trecord all responses to WARC files in dir\n" +
+			"\t--replay-warc=<dir>\tserve all responses from the WARC files in dir, without network access\n" +
+			"\t--profile=<file>\trecord the crawl with Java Flight Recorder to file and print a per stage time breakdown";
+	private static final String RECORD_WARC_OPTION = "--record-warc=";
+	private static final String REPLAY_WARC_OPTION = "--replay-warc=";
+	private static final String PROFILE_OPTION = "--profile=";
+
+	public static void main(String[] args) {
+		System.exit(run(args));
+	}
+
+	/**
+	 * Runs a crawl as specified by the command line arguments, printing the resulting page graph.
+	 * Returns the process exit code.
+	 * @param args
+	 * @return
+	 */
+	public static int run(String[] args) {
+		CrawlerOptions options = parseArguments(args);
+		if (options == null) {
+			printUsage();
+			return 1;
+		}
+
+		try {
+			SimpleCrawler crawler = options.getReplayWarcDirectory() != null ?
+					createReplayCrawler(options.getConfig(), options.getReplayWarcDirectory()) :
+					createSimpleCrawler(options.getConfig());
+			System.out.println(String.format("Starting crawler on URL %s", options.getRootUrl()));
+			Page rootPage = crawler.crawl(options.getRootUrl());
+			crawler.shutdown();
+			CrawlResultWriter.write(rootPage, new PrintWriter(System.out));
+			if (options.getConfig().getFlightRecordingFile() != null) {
+				System.out.println("Crawl profile:");
+				System.out.print(CrawlProfileSummary.read(Paths.get(options.getConfig().getFlightRecordingFile())));
+			}
+			return 0;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return -1;
+		}
+	}
+
+	/**
+	 * Parses the command line arguments. Returns null if they are not valid.
+	 * @param args
+	 * @return
+	 */
+	public static CrawlerOptions parseArguments(String[] args) {
+		CrawlerConfig config = new CrawlerConfig();
+		String replayWarcDirectory = null;
+		List<String> positionalArgs = new ArrayList<>();
+		for (String arg : args) {
+			if (arg.startsWith(RECORD_WARC_OPTION)) {
+				config.setWarcRecordingDirectory(arg.substring(RECORD_WARC_OPTION.length()));
+			} else if (arg.startsWith(REPLAY_WARC_OPTION)) {
+				replayWarcDirectory = arg.substring(REPLAY_WARC_OPTION.length());
+			} else if (arg.startsWith(PROFILE_OPTION)) {
+				if (!FlightRecorder.isAvailable()) {
+					// E.g. a native image built without JFR support.
+					System.out.println(String.format("Option %s is not supported, Java Flight Recorder is not available", PROFILE_OPTION));
+					return null;
+				}
+				config.setFlightRecordingFile(arg.substring(PROFILE_OPTION.length()));
+			} else if (arg.startsWith("--")) {
+				System.out.println(String.format("Unknown option %s", arg));
+				return null;
+			} else {
+				positionalArgs.add(arg);
+			}
+		}
+
+		if (positionalArgs.size() < 1 || positionalArgs.size() > 4) {
+			return null;
+		}
+
+		String rootUrl = positionalArgs.get(0);
+		try {
+			if (positionalArgs.size() >= 2) {
+				config.setMaxConcurrentRequests(Integer.parseInt(positionalArgs.get(1)));
+			}
+			if (positionalArgs.size() >= 3) {
+				config.setRequestTimeout(Integer.parseInt(positionalArgs.get(2)));
+			}
+		} catch (NumberFormatException e) {
+			System.out.println(String.format("Invalid number: %s", e.getMessage()));
+			return null;
+		}
+		if (positionalArgs.size() == 4) {
+			config.setUserAgent(positionalArgs.get(3));
+		}
+
+		return new CrawlerOptions(rootUrl, config, replayWarcDirectory);
+	}
+
+	public static void printUsage() {
+		System.out.println(USAGE);
+		System.out.println("Please specify at least an argument containing a root URL where to start crawling from.");
+	}
+
+	public static class CrawlerOptions {
+		private final String rootUrl;
+		private final CrawlerConfig config;
+		private final String replayWarcDirectory;
+
+		public CrawlerOptions(String rootUrl, CrawlerConfig config, String replayWarcDirectory) {
+			this.rootUrl = rootUrl;
+			this.config = config;
+			this.replayWarcDirectory = replayWarcDirectory;
+		}
+
+		public String getRootUrl() {
+			return rootUrl;
+		}
+
+		public CrawlerConfig getConfig() {
+			return config;
+		}
+
+		public String getReplayWarcDirectory() {
+			return replayWarcDirectory;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package com.scerra.utils.webcrawlerapp.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.scerra.utils.simplecrawler.SimpleCrawler;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.Future;
+
+/**
+ * A crawl job submitted to the crawl service. Its state is updated by the job thread and read by the REST API.
+ */
+public class CrawlJob {
+	public enum Status {
+		QUEUED, RUNNING, COMPLETED, CANCELLED, FAILED
+	}
+
+	private final String id;
+	private final String rootUrl;
+	private final Instant submittedAt;
+	private volatile Status status = Status.QUEUED;
+	private volatile Instant startedAt;
+	private volatile Instant finishedAt;
+	private volatile int crawledPages;
+	private volatile String error;
+	private volatile boolean cancelRequested;
+	private volatile SimpleCrawler crawler;
+	private volatile Future<?> future;
+	private volatile Path resultFile;
+
+	public CrawlJob(String id, String rootUrl) {
+		this.id = id;
+		this.rootUrl = rootUrl;
+		this.submittedAt = Instant.now();
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getRootUrl() {
+		return rootUrl;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public Instant getSubmittedAt() {
+		return submittedAt;
+	}
+
+	public Instant getStartedAt() {
+		return startedAt;
+	}
+
+	public Instant getFinishedAt() {
+		return finishedAt;
+	}
+
+	/**
+	 * Returns the number of pages crawled so far while the job is running, or in the result once it has finished.
+	 * @return
+	 */
+	public int getCrawledPages() {
+		SimpleCrawler runningCrawler = crawler;
+		return status == Status.RUNNING && runningCrawler != null ? runningCrawler.getCrawledPageCount() : crawledPages;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public boolean isResultAvailable() {
+		return resultFile != null;
+	}
+
+	@JsonIgnore
+	Path getResultFile() {
+		return resultFile;
+	}
+
+	@JsonIgnore
+	boolean isCancelRequested() {
+		return cancelRequested;
+	}
+
+	@JsonIgnore
+	boolean isFinished() {
+		return status == Status.COMPLETED || status == Status.CANCELLED || status == Status.FAILED;
+	}
+
+	void setFuture(Future<?> future) {
+		this.future = future;
+	}
+
+	/**
+	 * Moves the job to the running state. Returns false if the job was cancelled while queued, in which case it
+	 * must not run. Synchronized with cancel, so that a job is either cancelled while queued or while running.
+	 * @param crawler
+	 * @return
+	 */
+	synchronized boolean start(SimpleCrawler crawler) {
+		if (status != Status.QUEUED) {
+			return false;
+		}
+		this.crawler = crawler;
+		this.startedAt = Instant.now();
+		this.status = Status.RUNNING;
+		return true;
+	}
+
+	/**
+	 * Requests the cancellation of the job. A queued job will never run, a running one stops sending requests
+	 * and keeps the partial result.
+	 */
+	synchronized void cancel() {
+		cancelRequested = true;
+		if (status == Status.QUEUED) {
+			if (future != null) {
+				// Frees the queue slot, the job thread checks the status anyway if the task was already taken.
+				future.cancel(false);
+			}
+			finish(Status.CANCELLED, 0, null, null);
+		} else if (crawler != null) {
+			crawler.cancel();
+		}
+	}
+
+	synchronized void finish(Status status, int crawledPages, Path resultFile, String error) {
+		this.crawledPages = crawledPages;
+		this.resultFile = resultFile;
+		this.error = error;
+		this.crawler = null;
+		this.finishedAt = Instant.now();
+		this.status = status;
+	}
+}
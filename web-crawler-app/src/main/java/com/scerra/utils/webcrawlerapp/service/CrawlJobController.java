@@ -0,0 +1,94 @@
+package com.scerra.utils.webcrawlerapp.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * REST API of the crawl service:
+ * POST /jobs submits a job, GET /jobs and GET /jobs/{id} monitor jobs, DELETE /jobs/{id} cancels a job
+ * (or removes it once finished) and GET /jobs/{id}/result downloads the result of a finished job.
+ */
+@RestController
+@RequestMapping("/jobs")
+@ConditionalOnWebApplication
+public class CrawlJobController {
+	private final CrawlJobService crawlJobService;
+
+	public CrawlJobController(CrawlJobService crawlJobService) {
+		this.crawlJobService = crawlJobService;
+	}
+
+	@PostMapping
+	public ResponseEntity<CrawlJob> submit(@RequestBody CrawlJobRequest request) {
+		if (request.getRootUrl() == null || request.getRootUrl().isEmpty()) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "rootUrl is required");
+		}
+		if (request.getRequestTimeout() != null && request.getRequestTimeout() <= 0) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "requestTimeout must be positive");
+		}
+		try {
+			return ResponseEntity.status(HttpStatus.ACCEPTED).body(crawlJobService.submit(request));
+		} catch (RejectedExecutionException e) {
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The job queue is full");
+		}
+	}
+
+	@GetMapping
+	public Collection<CrawlJob> getJobs() {
+		return crawlJobService.getJobs();
+	}
+
+	@GetMapping("/{id}")
+	public CrawlJob getJob(@PathVariable String id) {
+		return findJob(id);
+	}
+
+	@DeleteMapping("/{id}")
+	public CrawlJob cancelOrDelete(@PathVariable String id) throws IOException {
+		CrawlJob job = findJob(id);
+		if (!crawlJobService.cancel(job)) {
+			crawlJobService.delete(job);
+		}
+		return job;
+	}
+
+	/**
+	 * Streams the result file of a finished job, without loading it in memory.
+	 * @param id
+	 * @return
+	 */
+	@GetMapping("/{id}/result")
+	public ResponseEntity<Resource> getResult(@PathVariable String id) {
+		CrawlJob job = findJob(id);
+		if (!job.isResultAvailable()) {
+			throw new ResponseStatusException(HttpStatus.CONFLICT, String.format("Job is %s, no result available", job.getStatus()));
+		}
+		return ResponseEntity.ok()
+				.contentType(MediaType.TEXT_PLAIN)
+				.body(new FileSystemResource(job.getResultFile()));
+	}
+
+	private CrawlJob findJob(String id) {
+		CrawlJob job = crawlJobService.getJob(id);
+		if (job == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, String.format("Job %s not found", id));
+		}
+		return job;
+	}
+}
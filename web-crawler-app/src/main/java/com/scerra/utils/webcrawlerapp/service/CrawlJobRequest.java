@@ -0,0 +1,56 @@
+package com.scerra.utils.webcrawlerapp.service;
+
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+
+/**
+ * Request body for submitting a crawl job. Any setting left out takes the crawler default value,
+ * unknown settings are rejected rather than silently ignored.
+ */
+public class CrawlJobRequest {
+	private String rootUrl;
+	private Integer maxConcurrentRequests;
+	private Integer requestTimeout;
+	private String userAgent;
+
+	public String getRootUrl() {
+		return rootUrl;
+	}
+
+	public void setRootUrl(String rootUrl) {
+		this.rootUrl = rootUrl;
+	}
+
+	public Integer getMaxConcurrentRequests() {
+		return maxConcurrentRequests;
+	}
+
+	public void setMaxConcurrentRequests(Integer maxConcurrentRequests) {
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+	public Integer getRequestTimeout() {
+		return requestTimeout;
+	}
+
+	public void setRequestTimeout(Integer requestTimeout) {
+		this.requestTimeout = requestTimeout;
+	}
+
+	public String getUserAgent() {
+		return userAgent;
+	}
+
+	public void setUserAgent(String userAgent) {
+		this.userAgent = userAgent;
+	}
+
+	/**
+	 * Rejects any unknown setting, which the application object mapper would otherwise ignore.
+	 * @param name
+	 * @param value
+	 */
+	@JsonAnySetter
+	public void setUnknownSetting(String name, Object value) {
+		throw new IllegalArgumentException(String.format("Unknown setting %s", name));
+	}
+}
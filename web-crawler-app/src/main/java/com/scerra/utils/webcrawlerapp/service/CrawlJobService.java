@@ -0,0 +1,192 @@
+package com.scerra.utils.webcrawlerapp.service;
+
+import com.scerra.utils.simplecrawler.CrawlerConfig;
+import com.scerra.utils.simplecrawler.CrawlerEngine;
+import com.scerra.utils.simplecrawler.Page;
+import com.scerra.utils.simplecrawler.SimpleCrawler;
+import com.scerra.utils.webcrawlerapp.CrawlResultWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs crawl jobs from a bounded queue, with a fixed number of jobs running in parallel.
+ * All jobs share the same crawler engine, so the HTTP connection pool and the response handler threads are reused.
+ * Results are written to files as soon as a job finishes, so that page graphs are not kept on the heap.
+ * Finished jobs are removed, along with their result, once older than the retention period, or oldest first
+ * when there are more than the maximum number of finished jobs.
+ */
+@Service
+@ConditionalOnWebApplication
+public class CrawlJobService {
+	private final CrawlerEngine crawlerEngine;
+	private final Path resultsDirectory;
+	private final int requestTimeout;
+	private final Duration finishedJobRetention;
+	private final int maxFinishedJobs;
+	private final ThreadPoolExecutor jobExecutor;
+	private final Map<String, CrawlJob> jobs = new ConcurrentHashMap<>();
+
+	public CrawlJobService(CrawlerEngine crawlerEngine,
+						   @Value("${crawler.service.parallelism}") int parallelism,
+						   @Value("${crawler.service.queue-capacity}") int queueCapacity,
+						   @Value("${crawler.service.results-directory}") String resultsDirectory,
+						   @Value("${crawler.service.request-timeout}") int requestTimeout,
+						   @Value("${crawler.service.finished-job-retention}") Duration finishedJobRetention,
+						   @Value("${crawler.service.max-finished-jobs}") int maxFinishedJobs) throws IOException {
+		this.crawlerEngine = crawlerEngine;
+		this.resultsDirectory = Paths.get(resultsDirectory);
+		this.requestTimeout = requestTimeout;
+		this.finishedJobRetention = finishedJobRetention;
+		this.maxFinishedJobs = maxFinishedJobs;
+		Files.createDirectories(this.resultsDirectory);
+		this.jobExecutor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity));
+	}
+
+	/**
+	 * Submits a crawl job. Throws RejectedExecutionException if the job queue is full.
+	 * @param request
+	 * @return
+	 */
+	public CrawlJob submit(CrawlJobRequest request) {
+		CrawlerConfig config = new CrawlerConfig()
+				.setRequestTimeout(request.getRequestTimeout() != null ? request.getRequestTimeout() : requestTimeout);
+		if (request.getMaxConcurrentRequests() != null) {
+			config.setMaxConcurrentRequests(request.getMaxConcurrentRequests());
+		}
+		if (request.getUserAgent() != null) {
+			config.setUserAgent(request.getUserAgent());
+		}
+
+		evictFinishedJobs();
+		CrawlJob job = new CrawlJob(UUID.randomUUID().toString(), request.getRootUrl());
+		jobs.put(job.getId(), job);
+		try {
+			job.setFuture(jobExecutor.submit(() -> runJob(job, config)));
+		} catch (RejectedExecutionException e) {
+			jobs.remove(job.getId());
+			throw e;
+		}
+		return job;
+	}
+
+	public CrawlJob getJob(String id) {
+		return jobs.get(id);
+	}
+
+	public Collection<CrawlJob> getJobs() {
+		return new ArrayList<>(jobs.values());
+	}
+
+	/**
+	 * Cancels a queued or running job. Returns false if the job had already finished.
+	 * @param job
+	 * @return
+	 */
+	public boolean cancel(CrawlJob job) {
+		if (job.isFinished()) {
+			return false;
+		}
+		job.cancel();
+		// Drop cancelled jobs from the queue right away, freeing their slots.
+		jobExecutor.purge();
+		return true;
+	}
+
+	/**
+	 * Removes a finished job, deleting its result.
+	 * @param job
+	 * @throws IOException
+	 */
+	public void delete(CrawlJob job) throws IOException {
+		jobs.remove(job.getId());
+		if (job.getResultFile() != null) {
+			Files.deleteIfExists(job.getResultFile());
+		}
+	}
+
+	/**
+	 * Removes the finished jobs older than the retention period, and the oldest ones beyond the maximum count.
+	 */
+	private void evictFinishedJobs() {
+		Instant expiry = Instant.now().minus(finishedJobRetention);
+		List<CrawlJob> finishedJobs = new ArrayList<>();
+		jobs.values().stream().filter(CrawlJob::isFinished).forEach(finishedJobs::add);
+		finishedJobs.sort(Comparator.comparing(CrawlJob::getFinishedAt));
+
+		int excess = finishedJobs.size() - maxFinishedJobs;
+		for (CrawlJob job : finishedJobs) {
+			if (excess <= 0 && !job.getFinishedAt().isBefore(expiry)) {
+				break;
+			}
+			excess -= 1;
+			try {
+				delete(job);
+			} catch (IOException e) {
+				System.err.println(String.format("Could not delete result of job %s: %s", job.getId(), e.getMessage()));
+			}
+		}
+	}
+
+	private void runJob(CrawlJob job, CrawlerConfig config) {
+		SimpleCrawler crawler = crawlerEngine.createCrawler(config);
+		if (!job.start(crawler)) {
+			// Cancelled while queued.
+			return;
+		}
+		try {
+			Page rootPage = crawler.crawl(job.getRootUrl());
+			CrawlJob.Status status = job.isCancelRequested() ? CrawlJob.Status.CANCELLED : CrawlJob.Status.COMPLETED;
+			if (rootPage == null) {
+				job.finish(status, 0, null, null);
+				return;
+			}
+
+			Path resultFile = resultsDirectory.resolve(job.getId() + ".txt");
+			int crawledPages;
+			try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8))) {
+				crawledPages = CrawlResultWriter.write(rootPage, out);
+			}
+			// From here on the page graph is only referenced by the result file.
+			job.finish(status, crawledPages, resultFile, null);
+		} catch (Exception e) {
+			e.printStackTrace();
+			job.finish(CrawlJob.Status.FAILED, 0, null, e.getMessage());
+		} finally {
+			try {
+				crawler.shutdown();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			evictFinishedJobs();
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		jobs.values().forEach(CrawlJob::cancel);
+		jobExecutor.shutdown();
+	}
+}
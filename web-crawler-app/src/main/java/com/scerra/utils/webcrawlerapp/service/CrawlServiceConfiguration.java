@@ -0,0 +1,23 @@
+package com.scerra.utils.webcrawlerapp.service;
+
+import com.scerra.utils.simplecrawler.CrawlerConfig;
+import com.scerra.utils.simplecrawler.CrawlerEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnWebApplication
+public class CrawlServiceConfiguration {
+
+	/**
+	 * The crawler engine shared by all crawl jobs, closed on shutdown.
+	 * @param requestTimeout
+	 * @return
+	 */
+	@Bean(destroyMethod = "close")
+	public CrawlerEngine crawlerEngine(@Value("${crawler.service.request-timeout}") int requestTimeout) {
+		return new CrawlerEngine(new CrawlerConfig().setRequestTimeout(requestTimeout));
+	}
+}
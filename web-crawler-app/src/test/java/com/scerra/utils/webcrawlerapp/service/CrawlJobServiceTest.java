@@ -0,0 +1,213 @@
+package com.scerra.utils.webcrawlerapp.service;
+
+import com.scerra.utils.simplecrawler.CrawlerConfig;
+import com.scerra.utils.simplecrawler.CrawlerEngine;
+import com.scerra.utils.simplecrawler.Page;
+import com.scerra.utils.simplecrawler.SimpleCrawler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CrawlJobServiceTest {
+	private static final long TIMEOUT_SECONDS = 5;
+
+	@TempDir
+	Path resultsDirectory;
+	private CrawlerEngine crawlerEngine;
+	private CrawlJobService crawlJobService;
+
+	@BeforeEach
+	void setUp() {
+		this.crawlerEngine = mock(CrawlerEngine.class);
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (crawlJobService != null) {
+			crawlJobService.shutdown();
+		}
+	}
+
+	@Test
+	void testSubmittedJobCompletes() throws IOException, InterruptedException {
+		SimpleCrawler crawler = mock(SimpleCrawler.class);
+		when(crawler.crawl("https://google.com")).thenReturn(newPage("https://google.com"));
+		ArgumentCaptor<CrawlerConfig> config = ArgumentCaptor.forClass(CrawlerConfig.class);
+		when(crawlerEngine.createCrawler(config.capture())).thenReturn(crawler);
+		crawlJobService = createService(1, 1, 10);
+
+		CrawlJobRequest request = newRequest("https://google.com");
+		request.setRequestTimeout(500);
+		CrawlJob job = crawlJobService.submit(request);
+		awaitFinished(job);
+
+		assertEquals(CrawlJob.Status.COMPLETED, job.getStatus());
+		assertEquals(1, job.getCrawledPages());
+		assertTrue(job.isResultAvailable());
+		assertTrue(new String(Files.readAllBytes(job.getResultFile())).contains("Page https://google.com"));
+		assertEquals(500, config.getValue().getRequestTimeout());
+		assertSame(job, crawlJobService.getJob(job.getId()));
+	}
+
+	@Test
+	void testRunningJobIsCancelled() throws IOException, InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		SimpleCrawler crawler = mockBlockingCrawler(started);
+		when(crawlerEngine.createCrawler(any())).thenReturn(crawler);
+		crawlJobService = createService(1, 1, 10);
+
+		CrawlJob job = crawlJobService.submit(newRequest("https://google.com"));
+		assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertEquals(CrawlJob.Status.RUNNING, job.getStatus());
+
+		assertTrue(crawlJobService.cancel(job));
+		awaitFinished(job);
+
+		verify(crawler).cancel();
+		assertEquals(CrawlJob.Status.CANCELLED, job.getStatus());
+		// The partial result is kept.
+		assertTrue(job.isResultAvailable());
+	}
+
+	@Test
+	void testQueuedJobIsCancelled() throws IOException, InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		SimpleCrawler crawler = mockBlockingCrawler(started);
+		when(crawlerEngine.createCrawler(any())).thenReturn(crawler);
+		crawlJobService = createService(1, 1, 10);
+
+		CrawlJob runningJob = crawlJobService.submit(newRequest("https://google.com"));
+		assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		CrawlJob queuedJob = crawlJobService.submit(newRequest("https://google.com/support"));
+		assertEquals(CrawlJob.Status.QUEUED, queuedJob.getStatus());
+
+		assertTrue(crawlJobService.cancel(queuedJob));
+		assertEquals(CrawlJob.Status.CANCELLED, queuedJob.getStatus());
+		assertFalse(queuedJob.isResultAvailable());
+
+		crawlJobService.cancel(runningJob);
+		awaitFinished(runningJob);
+		// The cancelled job never runs.
+		verify(crawlerEngine, times(1)).createCrawler(any());
+		assertEquals(CrawlJob.Status.CANCELLED, queuedJob.getStatus());
+	}
+
+	@Test
+	void testJobIsRejectedWhenQueueIsFull() throws IOException, InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		SimpleCrawler crawler = mockBlockingCrawler(started);
+		when(crawlerEngine.createCrawler(any())).thenReturn(crawler);
+		crawlJobService = createService(1, 1, 10);
+		CrawlJobController controller = new CrawlJobController(crawlJobService);
+
+		controller.submit(newRequest("https://google.com"));
+		assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		controller.submit(newRequest("https://google.com/support"));
+
+		ResponseStatusException e = assertThrows(ResponseStatusException.class,
+				() -> controller.submit(newRequest("https://google.com/about")));
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+		assertEquals(2, crawlJobService.getJobs().size());
+	}
+
+	@Test
+	void testJobStatusIsReported() throws IOException {
+		crawlJobService = createService(1, 1, 10);
+		CrawlJobController controller = new CrawlJobController(crawlJobService);
+
+		ResponseStatusException notFound = assertThrows(ResponseStatusException.class, () -> controller.getJob("missing"));
+		assertEquals(HttpStatus.NOT_FOUND, notFound.getStatus());
+
+		CrawlJobRequest request = newRequest("https://google.com");
+		request.setRequestTimeout(0);
+		ResponseStatusException badRequest = assertThrows(ResponseStatusException.class, () -> controller.submit(request));
+		assertEquals(HttpStatus.BAD_REQUEST, badRequest.getStatus());
+		verifyNoInteractions(crawlerEngine);
+	}
+
+	@Test
+	void testFinishedJobsAreEvicted() throws IOException, InterruptedException {
+		SimpleCrawler crawler = mock(SimpleCrawler.class);
+		when(crawler.crawl(anyString())).thenAnswer(invocation -> newPage(invocation.getArgument(0)));
+		when(crawlerEngine.createCrawler(any())).thenReturn(crawler);
+		crawlJobService = createService(1, 1, 1);
+
+		CrawlJob firstJob = crawlJobService.submit(newRequest("https://google.com"));
+		awaitFinished(firstJob);
+		CrawlJob secondJob = crawlJobService.submit(newRequest("https://google.com/support"));
+		awaitFinished(secondJob);
+
+		// Jobs are evicted by the job thread, right after finishing.
+		await(() -> crawlJobService.getJob(firstJob.getId()) == null);
+		assertFalse(Files.exists(firstJob.getResultFile()));
+		assertSame(secondJob, crawlJobService.getJob(secondJob.getId()));
+	}
+
+	private CrawlJobService createService(int parallelism, int queueCapacity, int maxFinishedJobs) throws IOException {
+		return new CrawlJobService(crawlerEngine, parallelism, queueCapacity, resultsDirectory.toString(), 15000,
+				Duration.ofHours(1), maxFinishedJobs);
+	}
+
+	/**
+	 * Returns a crawler whose crawl blocks until it is cancelled.
+	 */
+	private SimpleCrawler mockBlockingCrawler(CountDownLatch started) {
+		SimpleCrawler crawler = mock(SimpleCrawler.class);
+		CountDownLatch cancelled = new CountDownLatch(1);
+		when(crawler.crawl(anyString())).thenAnswer(invocation -> {
+			started.countDown();
+			cancelled.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			return newPage(invocation.getArgument(0));
+		});
+		lenient().doAnswer(invocation -> {
+			cancelled.countDown();
+			return null;
+		}).when(crawler).cancel();
+		return crawler;
+	}
+
+	private static CrawlJobRequest newRequest(String rootUrl) {
+		CrawlJobRequest request = new CrawlJobRequest();
+		request.setRootUrl(rootUrl);
+		return request;
+	}
+
+	private static Page newPage(String url) {
+		Page page = new Page(url);
+		page.setLinks(new ArrayList<>());
+		return page;
+	}
+
+	private static void awaitFinished(CrawlJob job) throws InterruptedException {
+		await(job::isFinished);
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(condition.getAsBoolean(), "Condition not met in time");
+	}
+}